@@ -0,0 +1,20 @@
+#!/bin/sh
+# compiles the interpreter into target/, packs it into target/zen.jar and
+# trains target/zen.jsa, the class-data-sharing archive the zen launcher uses.
+# the JVM only archives application classes loaded from a jar, hence the jar.
+# rebuilding the jar invalidates the archive, so both are always made together.
+set -e
+cd "$(dirname "$0")"
+
+rm -rf target
+javac -d target/ src/com/interpreter/zen/*.java
+jar --create --file target/zen.jar --main-class com.interpreter.zen.Zen -C target com
+
+# the classes the training run loads, the JDK's included, end up in the archive.
+# a static archive dumped from their list, rather than one dumped at the exit of
+# the run with -XX:ArchiveClassesAtExit, because on JDK 17 code run from some of
+# those came out several times slower.
+java -XX:DumpLoadedClassList=target/zen.classlist \
+    -cp target/zen.jar com.interpreter.zen.Zen --train tests
+java -Xshare:dump -XX:SharedClassListFile=target/zen.classlist \
+    -XX:SharedArchiveFile=target/zen.jsa -Xlog:cds=off -cp target/zen.jar
@@ -7,30 +7,52 @@ import java.util.Arrays;
 
 public class GenerateAST {
     public static void main(String[] args) throws IOException {
-        if (args.length != 1) {
-            System.err.println("Usage: generate_ast <output_directory>");
+        // --records: sealed interfaces with record nodes, for dispatch by pattern matching,
+        // named ExprNode and StmtNode so that they live next to the visitor classes.
+        boolean records = args.length == 2 && args[0].equals("--records");
+        if (args.length != 1 && !records) {
+            System.err.println("Usage: generate_ast [--records] <output_directory>");
             System.exit(64);
         }
 
-        String outputDir = args[0];
+        String outputDir = args[args.length - 1];
 
-        // expression nodes
-        defineAST(outputDir, "Expr", Arrays.asList(
+        List<String> exprTypes = Arrays.asList(
             "Assign   : Token name, Expr value",
             "Binary   : Expr left, Token operator, Expr right",
+            "Call     : Expr callee, Token paren, List<Expr> arguments",
+            "Get      : Expr object, Token name, InlineCache cache",
             "Grouping : Expr expression",
             "Literal  : Object value",
+            "Set      : Expr object, Token name, Expr value, InlineCache cache",
+            "Super    : Token keyword, Token method",
+            "This     : Token keyword",
             "Unary    : Token operator, Expr right",
             "Variable : Token name"
-        ));
+        );
 
-        // statement nodes
-        defineAST(outputDir, "Stmt", Arrays.asList(
+        List<String> stmtTypes = Arrays.asList(
             "Block      : List<Stmt> statements",
-            "Expression : Expr expression",
-            "Print      : Expr expression",
-            "Var        : Token name, Expr initializer"
-        ));
+            "Class      : Token name, Expr.Variable superclass, List<Stmt.Function> methods",
+            "Expression : Expr expression, Token semicolon",
+            "Function   : Token name, List<Token> params, List<Stmt> body",
+            "Import     : Token keyword, Token path",
+            "Print      : Token keyword, Expr expression",
+            "Return     : Token keyword, Expr value",
+            "Var        : Token name, Expr initializer",
+            "While      : Token keyword, Expr condition, Stmt body, Expr increment"
+        );
+
+        if (records) {
+            defineSealedAST(outputDir, "Expr", exprTypes);
+            defineSealedAST(outputDir, "Stmt", stmtTypes);
+        } else {
+            // expression nodes
+            defineAST(outputDir, "Expr", exprTypes);
+
+            // statement nodes
+            defineAST(outputDir, "Stmt", stmtTypes);
+        }
     }
 
     private static void defineAST(
@@ -109,4 +131,31 @@ public class GenerateAST {
         writer.println("    }");
     }
 
+    // the same nodes as a sealed interface, implemented by one record per type.
+    private static void defineSealedAST(
+            String outputDir, String baseName, List<String> types)
+            throws IOException {
+        String interfaceName = baseName + "Node";
+        String path = outputDir + "/" + interfaceName + ".java";
+        PrintWriter writer = new PrintWriter(path, "UTF-8");
+
+        writer.println("package com.interpreter.zen;");
+        writer.println();
+        writer.println("import java.util.List;");
+        writer.println();
+        writer.println("sealed interface " + interfaceName + " {");
+
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            // node fields refer to the record form of the other nodes too.
+            String fields = type.split(":")[1].trim()
+                .replaceAll("\\bExpr\\b", "ExprNode")
+                .replaceAll("\\bStmt\\b", "StmtNode");
+            writer.println("    record " + className + "(" + fields + ") implements " +
+                    interfaceName + " {}");
+        }
+
+        writer.println("}");
+        writer.close();
+    }
 }
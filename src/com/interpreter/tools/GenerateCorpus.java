@@ -0,0 +1,297 @@
+package com.interpreter.tools;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/*
+ * generates random but valid zen programs, each with the output it must produce.
+ *
+ * the expected output does not come from the interpreter:
+ * every expression is evaluated by a small reference model while it is generated,
+ * so any drift in the scanner, parser or interpreter shows up as a mismatch.
+ * the same seed always produces the same corpus.
+ */
+public class GenerateCorpus {
+    private static final String[] NAMES = { "a", "b", "c", "d", "e", "f", "g", "h" };
+    private static final String[] WORDS = { "zen", "lox", "tree", "walk", "block", "scope", " ", "" };
+    private static final int MAX_EXPR_DEPTH = 4;
+    private static final int MAX_BLOCK_DEPTH = 4;
+
+    private final Random random;
+    private final StringBuilder source = new StringBuilder();
+    private final StringBuilder expected = new StringBuilder();
+
+    // innermost scope last, mirrors the interpreter's chain of environments.
+    private final List<Map<String, Object>> scopes = new ArrayList<>();
+
+    private GenerateCorpus(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3 || args.length > 4) {
+            System.err.println("Usage: generate_corpus <output_directory> <count> <seed> [statements]");
+            System.exit(64);
+        }
+
+        String outputDir = args[0];
+        int count = Integer.parseInt(args[1]);
+        long seed = Long.parseLong(args[2]);
+        int statements = args.length == 4 ? Integer.parseInt(args[3]) : 100;
+
+        for (int i = 0; i < count; i++) {
+            // every program gets its own seed, so a single one can be regenerated.
+            GenerateCorpus generator = new GenerateCorpus(seed + i);
+            generator.program(statements);
+
+            String name = String.format("%s/gen_%d_%04d", outputDir, seed, i);
+            write(name + ".zen", generator.source.toString());
+            write(name + ".expected", generator.expected.toString());
+        }
+    }
+
+    private static void write(String path, String text) throws IOException {
+        PrintWriter writer = new PrintWriter(path, "UTF-8");
+        writer.print(text);
+        writer.close();
+    }
+
+    private void program(int statements) {
+        scopes.add(new HashMap<>());
+        for (int i = 0; i < statements; i++) {
+            statement(0, "");
+        }
+    }
+
+    // statement -> varDecl | assignment | printStmt | block ;
+    private void statement(int blockDepth, String indent) {
+        int choice = random.nextInt(10);
+
+        if (choice < 3) {
+            String name = NAMES[random.nextInt(NAMES.length)];
+            if (random.nextInt(8) == 0) {
+                line(indent, "var " + name + ";");
+                scopes.get(scopes.size() - 1).put(name, null);
+                return;
+            }
+
+            // the initializer is evaluated before the name is defined.
+            Object[] value = expression(MAX_EXPR_DEPTH);
+            line(indent, "var " + name + " = " + value[0] + ";");
+            scopes.get(scopes.size() - 1).put(name, value[1]);
+        } else if (choice < 5 && !visible().isEmpty()) {
+            List<String> names = visible();
+            String name = names.get(random.nextInt(names.size()));
+            Object[] value = expression(MAX_EXPR_DEPTH);
+            line(indent, name + " = " + value[0] + ";");
+            scopeOf(name).put(name, value[1]);
+        } else if (choice < 9 || blockDepth >= MAX_BLOCK_DEPTH) {
+            Object[] value = expression(MAX_EXPR_DEPTH);
+            line(indent, "print " + value[0] + ";");
+            expected.append(stringify(value[1])).append('\n');
+        } else {
+            line(indent, "{");
+            scopes.add(new HashMap<>());
+            int count = 1 + random.nextInt(6);
+            for (int i = 0; i < count; i++) {
+                statement(blockDepth + 1, indent + "    ");
+            }
+            scopes.remove(scopes.size() - 1);
+            line(indent, "}");
+        }
+    }
+
+    private void line(String indent, String text) {
+        source.append(indent).append(text).append('\n');
+    }
+
+    /*
+     * every generator returns { source text, value },
+     * the value uses the interpreter's representation:
+     * Double, String, Boolean or null for none.
+     */
+    private Object[] expression(int depth) {
+        switch (random.nextInt(8)) {
+            case 0: return anyVariable("none", null);
+            case 1:
+            case 2: return string(depth);
+            case 3:
+            case 4: return bool(depth);
+            default: return number(depth);
+        }
+    }
+
+    private Object[] number(int depth) {
+        int choice = depth <= 0 ? random.nextInt(2) : random.nextInt(7);
+        switch (choice) {
+            case 0: {
+                String text = random.nextBoolean()
+                    ? Integer.toString(random.nextInt(100))
+                    : random.nextInt(100) + "." + random.nextInt(100);
+                return new Object[] { text, Double.parseDouble(text) };
+            }
+            case 1: {
+                Object[] variable = variableOf(Double.class);
+                if (variable != null) return variable;
+                return number(0);
+            }
+            case 2: {
+                Object[] right = number(depth - 1);
+                return new Object[] { "-" + group(right[0]), -(double)right[1] };
+            }
+            case 3: {
+                Object[] inner = number(depth - 1);
+                return new Object[] { "(" + inner[0] + ")", inner[1] };
+            }
+            default: {
+                Object[] left = number(depth - 1);
+                Object[] right = number(depth - 1);
+                double a = (double)left[1];
+                double b = (double)right[1];
+                switch (random.nextInt(4)) {
+                    case 0: return binary(left, "+", right, a + b);
+                    case 1: return binary(left, "-", right, a - b);
+                    case 2: return binary(left, "*", right, a * b);
+                    default: return binary(left, "/", right, a / b);
+                }
+            }
+        }
+    }
+
+    private Object[] string(int depth) {
+        int choice = depth <= 0 ? random.nextInt(2) : random.nextInt(4);
+        switch (choice) {
+            case 0: {
+                String text = WORDS[random.nextInt(WORDS.length)];
+                return new Object[] { "\"" + text + "\"", text };
+            }
+            case 1: {
+                Object[] variable = variableOf(String.class);
+                if (variable != null) return variable;
+                return string(0);
+            }
+            default: {
+                Object[] left = string(depth - 1);
+                Object[] right = string(depth - 1);
+                return binary(left, "+", right, (String)left[1] + (String)right[1]);
+            }
+        }
+    }
+
+    private Object[] bool(int depth) {
+        int choice = depth <= 0 ? random.nextInt(2) : random.nextInt(6);
+        switch (choice) {
+            case 0: {
+                boolean value = random.nextBoolean();
+                return new Object[] { Boolean.toString(value), value };
+            }
+            case 1: {
+                Object[] variable = variableOf(Boolean.class);
+                if (variable != null) return variable;
+                return bool(0);
+            }
+            case 2: {
+                Object[] right = expression(depth - 1);
+                return new Object[] { "!" + group(right[0]), !isTruthy(right[1]) };
+            }
+            case 3: {
+                Object[] left = number(depth - 1);
+                Object[] right = number(depth - 1);
+                double a = (double)left[1];
+                double b = (double)right[1];
+                switch (random.nextInt(4)) {
+                    case 0: return binary(left, "<", right, a < b);
+                    case 1: return binary(left, "<=", right, a <= b);
+                    case 2: return binary(left, ">", right, a > b);
+                    default: return binary(left, ">=", right, a >= b);
+                }
+            }
+            default: {
+                Object[] left = expression(depth - 1);
+                Object[] right = expression(depth - 1);
+                boolean equal = Objects.equals(left[1], right[1]);
+                return random.nextBoolean()
+                    ? binary(left, "==", right, equal)
+                    : binary(left, "!=", right, !equal);
+            }
+        }
+    }
+
+    // operands are always grouped, so the generated text never depends on precedence.
+    private Object[] binary(Object[] left, String operator, Object[] right, Object value) {
+        return new Object[] {
+            group(left[0]) + " " + operator + " " + group(right[0]), value
+        };
+    }
+
+    private String group(Object text) {
+        return "(" + text + ")";
+    }
+
+    private Object[] variableOf(Class<?> type) {
+        List<String> candidates = new ArrayList<>();
+        for (String name : visible()) {
+            if (type.isInstance(scopeOf(name).get(name))) candidates.add(name);
+        }
+
+        if (candidates.isEmpty()) return null;
+        String name = candidates.get(random.nextInt(candidates.size()));
+        return new Object[] { name, scopeOf(name).get(name) };
+    }
+
+    private Object[] anyVariable(String fallback, Object fallbackValue) {
+        List<String> names = visible();
+        if (names.isEmpty()) return new Object[] { fallback, fallbackValue };
+
+        String name = names.get(random.nextInt(names.size()));
+        return new Object[] { name, scopeOf(name).get(name) };
+    }
+
+    private List<String> visible() {
+        List<String> names = new ArrayList<>();
+        for (Map<String, Object> scope : scopes) {
+            for (String name : scope.keySet()) {
+                if (!names.contains(name)) names.add(name);
+            }
+        }
+
+        // sorted, since HashMap order must not leak into the choices.
+        names.sort(null);
+        return names;
+    }
+
+    private Map<String, Object> scopeOf(String name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            if (scopes.get(i).containsKey(name)) return scopes.get(i);
+        }
+
+        return null;
+    }
+
+    private static boolean isTruthy(Object object) {
+        if (object == null) return false;
+        if (object instanceof Boolean) return (boolean)object;
+        return true;
+    }
+
+    private static String stringify(Object object) {
+        if (object == null) return "none";
+
+        if (object instanceof Double) {
+            String text = object.toString();
+            if (text.endsWith(".0")) {
+                text = text.substring(0, text.length() - 2);
+            }
+
+            return text;
+        }
+
+        return object.toString();
+    }
+}
@@ -0,0 +1,122 @@
+package com.interpreter.zen;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/*
+ * compares the execution engines on one script, in the style of JMH:
+ * the script is scanned, parsed and compiled once per engine,
+ * then run for a number of warmup iterations and measured iterations.
+ * output is discarded while measuring, runtime errors end the run.
+ * the "scan" and "parse" stages time the front end on the same script.
+ * --scale n runs the script repeated n times over, to turn the small test
+ * scripts into workloads.
+ */
+public class Benchmark {
+    public static void main(String[] args) throws IOException {
+        int warmup = 10;
+        int iterations = 20;
+        boolean eliminateDeadStores = false;
+        int scale = 1;
+        int first = 0;
+
+        while (first < args.length && args[first].startsWith("--")) {
+            if (args[first].equals("--eliminate-dead-stores")) {
+                eliminateDeadStores = true;
+                first++;
+                continue;
+            }
+
+            if (first + 1 >= args.length) usage();
+            switch (args[first]) {
+                case "--warmup": warmup = Integer.parseInt(args[first + 1]); break;
+                case "--iterations": iterations = Integer.parseInt(args[first + 1]); break;
+                case "--scale": scale = Integer.parseInt(args[first + 1]); break;
+                default: usage();
+            }
+            first += 2;
+        }
+
+        if (args.length - first < 2 || iterations < 1 || scale < 1) usage();
+
+        byte[] bytes = Files.readAllBytes(Paths.get(args[first]));
+        String source = (new String(bytes, Charset.defaultCharset()) + "\n").repeat(scale);
+        List<Stmt> statements = new Parser(new Scanner(source).scanTokens()).parse();
+        Path script = Paths.get(args[first]);
+        if (Zen.hadError || !Modules.preload(statements, script.toAbsolutePath().getParent())) System.exit(65);
+        if (eliminateDeadStores) statements = DeadStoreElimination.apply(statements);
+
+        for (int i = first + 1; i < args.length; i++) {
+            String engine = args[i];
+            Runnable program = compile(engine, source, statements, script);
+            if (program == null) {
+                System.out.printf("%-10s cannot run this script%n", engine);
+                continue;
+            }
+
+            PrintStream out = System.out;
+            long best = Long.MAX_VALUE;
+            long total = 0;
+            try {
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                for (int n = 0; n < warmup + iterations; n++) {
+                    long start = System.nanoTime();
+                    program.run();
+                    long elapsed = System.nanoTime() - start;
+                    if (n >= warmup) {
+                        best = Math.min(best, elapsed);
+                        total += elapsed;
+                    }
+                }
+            } finally {
+                System.setOut(out);
+            }
+
+            System.out.printf("%-10s avg %10.3f ms   best %10.3f ms%n",
+                engine, total / 1e6 / iterations, best / 1e6);
+        }
+    }
+
+    private static Runnable compile(String engine, String source, List<Stmt> statements, Path script) {
+        Environment globals = new Environment();
+        switch (engine) {
+            case "scan":
+                return () -> new Scanner(source).scanTokens();
+            case "parse": {
+                List<Token> tokens = new Scanner(source).scanTokens();
+                return () -> new Parser(tokens).parse();
+            }
+            case "tree": {
+                Interpreter interpreter = new Interpreter();
+                interpreter.setScript(script);
+                return () -> interpreter.interpret(statements);
+            }
+            case "typed": {
+                Interpreter interpreter = new Interpreter();
+                interpreter.setScript(script);
+                interpreter.setInferTypes(true);
+                return () -> interpreter.interpret(statements);
+            }
+            case "closure": return ClosureCompiler.compile(statements, globals);
+            case "nanbox": return NanBoxCompiler.compile(statements, globals);
+            case "jit": return Jit.compile(statements, globals);
+            case "pattern": return PatternInterpreter.compile(statements, globals);
+            default:
+                usage();
+                return null;
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: benchmark [--warmup n] [--iterations n] [--scale n]" +
+            " [--eliminate-dead-stores] <script>" +
+            " scan|parse|tree|typed|closure|nanbox|jit|pattern...");
+        System.exit(64);
+    }
+}
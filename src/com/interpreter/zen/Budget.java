@@ -0,0 +1,27 @@
+package com.interpreter.zen;
+
+/*
+ * resource limits for a single execution of the interpreter,
+ * used to keep an untrusted script from monopolising the process.
+ *
+ * every limit defaults to "unlimited",
+ * a breach is reported as a RuntimeError at the offending token.
+ */
+class Budget {
+    // number of evaluated operator, variable and declaration nodes.
+    long maxSteps = Long.MAX_VALUE;
+
+    // wall-clock limit in milliseconds, 0 means no deadline.
+    long timeoutMillis = 0;
+
+    // longest string that PLUS concatenation may produce.
+    int maxStringLength = Integer.MAX_VALUE;
+
+    // deepest chain of nested block environments and calls.
+    int maxDepth = Integer.MAX_VALUE;
+
+    boolean isUnlimited() {
+        return maxSteps == Long.MAX_VALUE && timeoutMillis == 0 &&
+               maxStringLength == Integer.MAX_VALUE && maxDepth == Integer.MAX_VALUE;
+    }
+}
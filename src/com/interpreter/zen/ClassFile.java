@@ -0,0 +1,348 @@
+package com.interpreter.zen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * minimal class file writer for the JIT tier.
+ *
+ * it emits a single class with a single static method, and nothing else.
+ * the only branches are those of loops. the class file version is 49, whose
+ * verifier infers the types at branch targets itself, so the method needs
+ * no StackMapTable. max_stack is tracked as instructions are emitted.
+ */
+class ClassFile {
+    // opcodes used by Jit.
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int DLOAD = 0x18;
+    static final int ALOAD = 0x19;
+    static final int DSTORE = 0x39;
+    static final int ASTORE = 0x3a;
+    static final int POP = 0x57;
+    static final int POP2 = 0x58;
+    static final int DUP = 0x59;
+    static final int DUP2 = 0x5c;
+    static final int SWAP = 0x5f;
+    static final int DADD = 0x63;
+    static final int DSUB = 0x67;
+    static final int DMUL = 0x6b;
+    static final int DDIV = 0x6f;
+    static final int DNEG = 0x77;
+    static final int IXOR = 0x82;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int GOTO = 0xa7;
+    static final int RETURN = 0xb1;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESTATIC = 0xb8;
+    static final int WIDE = 0xc4;
+
+    private static final int MAX_SIZE = 0xffff;
+
+    // constant pool, entries are deduplicated by their encoded form.
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int poolCount = 1;
+
+    private final Code code = new Code();
+    private int stack = 0;
+    private int maxStack = 0;
+    private int maxLocals;
+
+    // set when a branch is too long for its 16 bit offset.
+    private boolean overflow = false;
+
+    private final String className;
+
+    ClassFile(String className, int parameterSlots) {
+        this.className = className;
+        this.maxLocals = parameterSlots;
+    }
+
+    int codeSize() {
+        return code.size();
+    }
+
+    // reserves a local variable, doubles take two slots.
+    int newLocal(int size) {
+        int slot = maxLocals;
+        maxLocals += size;
+        return slot;
+    }
+
+    boolean fits() {
+        return code.size() <= MAX_SIZE && poolCount <= MAX_SIZE && maxLocals <= MAX_SIZE && !overflow;
+    }
+
+    // ---- instructions, every one declares its effect on the operand stack.
+
+    void op(int opcode, int stackEffect) {
+        code.write(opcode);
+        adjust(stackEffect);
+    }
+
+    void local(int opcode, int slot, int stackEffect) {
+        if (slot > 0xff) {
+            code.write(WIDE);
+            code.write(opcode);
+            u2(code, slot);
+        } else {
+            code.write(opcode);
+            code.write(slot);
+        }
+        adjust(stackEffect);
+    }
+
+    void pushInt(int value) {
+        if (value == 0 || value == 1) {
+            op(value == 0 ? ICONST_0 : ICONST_1, 1);
+        } else if (value <= Byte.MAX_VALUE) {
+            code.write(BIPUSH);
+            code.write(value);
+            adjust(1);
+        } else if (value <= Short.MAX_VALUE) {
+            code.write(SIPUSH);
+            u2(code, value);
+            adjust(1);
+        } else {
+            code.write(LDC_W);
+            u2(code, constant("I" + value, 3, value, 1));
+            adjust(1);
+        }
+    }
+
+    void pushDouble(double value) {
+        code.write(LDC2_W);
+        // keyed by the raw bits, so that 0.0 and -0.0 stay distinct.
+        u2(code, constant("D" + Double.doubleToRawLongBits(value), 6, value, 2));
+        adjust(2);
+    }
+
+    void pushString(String value) {
+        code.write(LDC_W);
+        u2(code, constant("S" + value, 8, utf8(value), 1));
+        adjust(1);
+    }
+
+    void invoke(int opcode, String owner, String name, String descriptor) {
+        code.write(opcode);
+        u2(code, methodRef(owner, name, descriptor));
+
+        int effect = returnSize(descriptor) - argumentSize(descriptor);
+        if (opcode != INVOKESTATIC)
+            effect--;
+        adjust(effect);
+    }
+
+    // ---- branches, IFEQ and IFNE pop the int they test.
+
+    // where the next instruction goes, to jump back to.
+    int position() {
+        return code.size();
+    }
+
+    void jumpTo(int opcode, int target) {
+        int at = code.size();
+        code.write(opcode);
+        offset(target - at);
+        adjust(opcode == GOTO ? 0 : -1);
+    }
+
+    // a jump to a position not known yet, returns what to give to land().
+    int jumpForward(int opcode) {
+        int at = code.size();
+        code.write(opcode);
+        u2(code, 0);
+        adjust(opcode == GOTO ? 0 : -1);
+        return at;
+    }
+
+    // points the forward jump at the next instruction.
+    void land(int jump) {
+        int offset = code.size() - jump;
+        if (offset > Short.MAX_VALUE) {
+            overflow = true;
+            return;
+        }
+
+        code.set(jump + 1, offset >>> 8);
+        code.set(jump + 2, offset);
+    }
+
+    // code that can be patched where it was written.
+    private static class Code extends ByteArrayOutputStream {
+        void set(int index, int value) {
+            buf[index] = (byte)value;
+        }
+    }
+
+    private void offset(int offset) {
+        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) overflow = true;
+        u2(code, offset);
+    }
+
+    private void adjust(int stackEffect) {
+        stack += stackEffect;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    // ---- class file layout.
+
+    byte[] toBytes(String methodName, String methodDescriptor) {
+        int thisClass = classRef(className);
+        int superClass = classRef("java/lang/Object");
+        int name = utf8(methodName);
+        int descriptor = utf8(methodDescriptor);
+        int codeAttribute = utf8("Code");
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+
+            out.writeShort(0x0030); // ACC_FINAL | ACC_SUPER
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+
+            out.writeShort(1);
+            out.writeShort(0x0008); // ACC_STATIC
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+
+            out.writeShort(codeAttribute);
+            out.writeInt(12 + code.size());
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.size());
+            code.writeTo(out);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // code attributes
+
+            out.writeShort(0); // class attributes
+            return bytes.toByteArray();
+        } catch (IOException error) {
+            // writing to memory does not fail.
+            throw new IllegalStateException(error);
+        }
+    }
+
+    // ---- constant pool.
+
+    private int utf8(String text) {
+        Integer index = entries.get("U" + text);
+        if (index != null) return index;
+
+        try {
+            poolOut.writeByte(1);
+            poolOut.writeUTF(text);
+        } catch (IOException error) {
+            throw new IllegalStateException(error);
+        }
+        entries.put("U" + text, poolCount);
+        return poolCount++;
+    }
+
+    private int classRef(String internalName) {
+        return constant("C" + internalName, 7, utf8(internalName), 1);
+    }
+
+    private int methodRef(String owner, String name, String descriptor) {
+        String key = "M" + owner + "." + name + descriptor;
+        Integer index = entries.get(key);
+        if (index != null) return index;
+
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(utf8(name), utf8(descriptor));
+        return entry(key, 10, ownerIndex, nameAndType);
+    }
+
+    private int nameAndType(int name, int descriptor) {
+        return entry("N" + name + ":" + descriptor, 12, name, descriptor);
+    }
+
+    private int entry(String key, int tag, int first, int second) {
+        Integer index = entries.get(key);
+        if (index != null) return index;
+
+        try {
+            poolOut.writeByte(tag);
+            poolOut.writeShort(first);
+            poolOut.writeShort(second);
+        } catch (IOException error) {
+            throw new IllegalStateException(error);
+        }
+        entries.put(key, poolCount);
+        return poolCount++;
+    }
+
+    // single-value constants: Integer, Double, Class and String.
+    private int constant(String key, int tag, Object value, int slots) {
+        Integer index = entries.get(key);
+        if (index != null) return index;
+
+        try {
+            poolOut.writeByte(tag);
+            switch (tag) {
+                case 3: poolOut.writeInt((int)value); break;
+                case 6: poolOut.writeDouble((double)value); break;
+                default: poolOut.writeShort((int)value); break;
+            }
+        } catch (IOException error) {
+            throw new IllegalStateException(error);
+        }
+        entries.put(key, poolCount);
+        int result = poolCount;
+        poolCount += slots;
+        return result;
+    }
+
+    // ---- descriptors.
+
+    private static int argumentSize(String descriptor) {
+        int size = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            if (c == 'D' || c == 'J') {
+                size += 2;
+            } else {
+                size += 1;
+                while (descriptor.charAt(i) == '[') i++;
+                if (descriptor.charAt(i) == 'L') i = descriptor.indexOf(';', i);
+            }
+            i++;
+        }
+
+        return size;
+    }
+
+    private static int returnSize(String descriptor) {
+        char c = descriptor.charAt(descriptor.indexOf(')') + 1);
+        if (c == 'V') return 0;
+        if (c == 'D' || c == 'J') return 2;
+        return 1;
+    }
+
+    private static void u2(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 8);
+        out.write(value);
+    }
+}
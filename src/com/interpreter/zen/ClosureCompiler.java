@@ -0,0 +1,353 @@
+package com.interpreter.zen;
+
+import java.util.List;
+
+/*
+ * compiles the AST once into a tree of pre-linked lambdas.
+ *
+ * operator dispatch, token lookups and the visitor's double dispatch
+ * all happen here, at compile time. at run time every node is a single
+ * call to the lambdas it captured, which HotSpot can inline far better
+ * than the megamorphic accept(this) of the Interpreter.
+ *
+ * variables still live in Environments, so scoping and errors stay identical.
+ * programs with constructs this compiler does not know about are not compiled,
+ * compile() then returns null and the caller falls back to the Interpreter.
+ */
+class ClosureCompiler implements Expr.Visitor<ClosureCompiler.Eval>,
+                                 Stmt.Visitor<ClosureCompiler.Exec> {
+    // sentinel, unwinds the compiler when it meets an unsupported construct.
+    private static class Unsupported extends RuntimeException {}
+
+    interface Eval {
+        Object eval(Environment environment);
+    }
+
+    interface Exec {
+        void exec(Environment environment);
+    }
+
+    // a loop condition, evaluated straight to a boolean.
+    interface Test {
+        boolean test(Environment environment);
+    }
+
+    private ClosureCompiler() {}
+
+    static Runnable compile(List<Stmt> statements, Environment globals) {
+        Exec[] program;
+        try {
+            program = new ClosureCompiler().compileAll(statements);
+        } catch (Unsupported error) {
+            return null;
+        }
+
+        return () -> {
+            for (Exec statement : program) {
+                statement.exec(globals);
+            }
+        };
+    }
+
+    private Exec[] compileAll(List<Stmt> statements) {
+        Exec[] compiled = new Exec[statements.size()];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = statements.get(i).accept(this);
+        }
+
+        return compiled;
+    }
+
+    private Eval compile(Expr expr) {
+        return expr.accept(this);
+    }
+
+    @Override
+    public Eval visitLiteralExpr(Expr.Literal expr) {
+        Object value = expr.value;
+        return environment -> value;
+    }
+
+    // functions only run in the tree engine, whose calls use the frames of Resolver.
+    @Override
+    public Eval visitCallExpr(Expr.Call expr) {
+        throw new Unsupported();
+    }
+
+    // so do classes, whose instances are laid out by their shapes.
+    @Override
+    public Eval visitGetExpr(Expr.Get expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Eval visitSetExpr(Expr.Set expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Eval visitSuperExpr(Expr.Super expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Eval visitThisExpr(Expr.This expr) {
+        throw new Unsupported();
+    }
+
+    // groupings only matter to the parser, they compile to nothing.
+    @Override
+    public Eval visitGroupingExpr(Expr.Grouping expr) {
+        return compile(expr.expression);
+    }
+
+    @Override
+    public Eval visitUnaryExpr(Expr.Unary expr) {
+        Eval right = compile(expr.right);
+        Token operator = expr.operator;
+
+        switch (operator.type) {
+            case NOT:
+                return environment -> !Interpreter.isTruthy(right.eval(environment));
+            case MINUS:
+                return environment -> {
+                    Object value = right.eval(environment);
+                    Interpreter.checkNumberOperand(operator, value);
+                    return -(double)value;
+                };
+            default:
+                throw new Unsupported();
+        }
+    }
+
+    @Override
+    public Eval visitVariableExpr(Expr.Variable expr) {
+        Token name = expr.name;
+        return environment -> environment.get(name);
+    }
+
+    @Override
+    public Eval visitAssignExpr(Expr.Assign expr) {
+        Token name = expr.name;
+        Eval value = compile(expr.value);
+
+        return environment -> {
+            Object result = value.eval(environment);
+            environment.assign(name, result);
+            return result;
+        };
+    }
+
+    @Override
+    public Eval visitBinaryExpr(Expr.Binary expr) {
+        Eval left = compile(expr.left);
+        Eval right = compile(expr.right);
+        Token operator = expr.operator;
+
+        switch (operator.type) {
+            case MINUS:
+                return environment -> {
+                    Object a = left.eval(environment);
+                    Object b = right.eval(environment);
+                    Interpreter.checkNumberOperands(operator, a, b);
+                    return (double)a - (double)b;
+                };
+            case SLASH:
+                return environment -> {
+                    Object a = left.eval(environment);
+                    Object b = right.eval(environment);
+                    Interpreter.checkNumberOperands(operator, a, b);
+                    return (double)a / (double)b;
+                };
+            case STAR:
+                return environment -> {
+                    Object a = left.eval(environment);
+                    Object b = right.eval(environment);
+                    Interpreter.checkNumberOperands(operator, a, b);
+                    return (double)a * (double)b;
+                };
+            case PLUS:
+                return environment -> {
+                    Object a = left.eval(environment);
+                    Object b = right.eval(environment);
+                    if (a instanceof Double && b instanceof Double) {
+                        return (double)a + (double)b;
+                    }
+                    if (a instanceof String && b instanceof String) {
+                        return Interpreter.concatenate((String)a, (String)b);
+                    }
+
+                    throw new RuntimeError(operator,
+                        "Operands must either be two numbers or two strings.");
+                };
+
+            case GREATER:
+                return environment -> {
+                    Object a = left.eval(environment);
+                    Object b = right.eval(environment);
+                    Interpreter.checkNumberOperands(operator, a, b);
+                    return (double)a > (double)b;
+                };
+            case GREATER_EQUAL:
+                return environment -> {
+                    Object a = left.eval(environment);
+                    Object b = right.eval(environment);
+                    Interpreter.checkNumberOperands(operator, a, b);
+                    return (double)a >= (double)b;
+                };
+            case LESS:
+                return environment -> {
+                    Object a = left.eval(environment);
+                    Object b = right.eval(environment);
+                    Interpreter.checkNumberOperands(operator, a, b);
+                    return (double)a < (double)b;
+                };
+            case LESS_EQUAL:
+                return environment -> {
+                    Object a = left.eval(environment);
+                    Object b = right.eval(environment);
+                    Interpreter.checkNumberOperands(operator, a, b);
+                    return (double)a <= (double)b;
+                };
+
+            case NOT_EQUAL:
+                return environment ->
+                    !Interpreter.isEqual(left.eval(environment), right.eval(environment));
+            case EQUAL_EQUAL:
+                return environment ->
+                    Interpreter.isEqual(left.eval(environment), right.eval(environment));
+
+            default:
+                throw new Unsupported();
+        }
+    }
+
+    @Override
+    public Exec visitBlockStmt(Stmt.Block stmt) {
+        Exec[] body = compileAll(stmt.statements);
+
+        return environment -> {
+            Environment inner = new Environment(environment);
+            for (Exec statement : body) {
+                statement.exec(inner);
+            }
+        };
+    }
+
+    @Override
+    public Exec visitExpressionStmt(Stmt.Expression stmt) {
+        Eval expression = compile(stmt.expression);
+        return environment -> expression.eval(environment);
+    }
+
+    @Override
+    public Exec visitFunctionStmt(Stmt.Function stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Exec visitClassStmt(Stmt.Class stmt) {
+        throw new Unsupported();
+    }
+
+    // modules are loaded and run by the Interpreter.
+    @Override
+    public Exec visitImportStmt(Stmt.Import stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Exec visitPrintStmt(Stmt.Print stmt) {
+        Eval expression = compile(stmt.expression);
+        return environment ->
+            System.out.println(Interpreter.stringify(expression.eval(environment)));
+    }
+
+    @Override
+    public Exec visitReturnStmt(Stmt.Return stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Exec visitVarStmt(Stmt.Var stmt) {
+        String name = stmt.name.lexeme;
+        if (stmt.initializer == null) {
+            return environment -> environment.define(name, null);
+        }
+
+        Eval initializer = compile(stmt.initializer);
+        return environment -> environment.define(name, initializer.eval(environment));
+    }
+
+    // a block body runs in one environment per loop, emptied every iteration, like in the Interpreter.
+    @Override
+    public Exec visitWhileStmt(Stmt.While stmt) {
+        Test condition = condition(stmt.condition);
+        Eval increment = stmt.increment == null ? null : compile(stmt.increment);
+
+        if (!(stmt.body instanceof Stmt.Block)) {
+            Exec body = stmt.body.accept(this);
+            return environment -> {
+                while (condition.test(environment)) {
+                    body.exec(environment);
+                    if (increment != null) increment.eval(environment);
+                }
+            };
+        }
+
+        Exec[] body = compileAll(((Stmt.Block)stmt.body).statements);
+        return environment -> {
+            Environment inner = new Environment(environment);
+            while (condition.test(environment)) {
+                inner.clear();
+                for (Exec statement : body) {
+                    statement.exec(inner);
+                }
+                if (increment != null) increment.eval(environment);
+            }
+        };
+    }
+
+    // comparisons compare their operands directly instead of boxing a Boolean.
+    private Test condition(Expr expr) {
+        Token operator = expr instanceof Expr.Binary ? ((Expr.Binary)expr).operator : null;
+        if (operator == null || operator.type != TokenType.LESS && operator.type != TokenType.LESS_EQUAL &&
+            operator.type != TokenType.GREATER && operator.type != TokenType.GREATER_EQUAL) {
+            Eval condition = compile(expr);
+            return environment -> Interpreter.isTruthy(condition.eval(environment));
+        }
+
+        Eval left = compile(((Expr.Binary)expr).left);
+        Eval right = compile(((Expr.Binary)expr).right);
+        switch (operator.type) {
+            case LESS:
+                return environment -> {
+                    Object a = left.eval(environment);
+                    Object b = right.eval(environment);
+                    Interpreter.checkNumberOperands(operator, a, b);
+                    return (double)a < (double)b;
+                };
+            case LESS_EQUAL:
+                return environment -> {
+                    Object a = left.eval(environment);
+                    Object b = right.eval(environment);
+                    Interpreter.checkNumberOperands(operator, a, b);
+                    return (double)a <= (double)b;
+                };
+            case GREATER:
+                return environment -> {
+                    Object a = left.eval(environment);
+                    Object b = right.eval(environment);
+                    Interpreter.checkNumberOperands(operator, a, b);
+                    return (double)a > (double)b;
+                };
+            default:
+                return environment -> {
+                    Object a = left.eval(environment);
+                    Object b = right.eval(environment);
+                    Interpreter.checkNumberOperands(operator, a, b);
+                    return (double)a >= (double)b;
+                };
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.interpreter.zen;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/*
+ * measures how the shared global environment scales with the thread count:
+ * every thread runs the script in its own tree-walking interpreter, all of
+ * them reading and assigning the same globals.
+ *
+ * "shared" is the SharedEnvironment, "locked" is the plain Environment
+ * behind one lock, the simplest way to make it safe, as the baseline.
+ * threads warm up on their own, then run the measured iterations together,
+ * so the time is that of the slowest thread. output is discarded, but the
+ * stream is still one lock, so print statements serialize the threads.
+ */
+public class ConcurrentBenchmark {
+    // the plain Environment with every access behind one lock.
+    private static class LockedEnvironment extends Environment {
+        @Override
+        synchronized Object get(Token name) {
+            return super.get(name);
+        }
+
+        @Override
+        synchronized void assign(Token name, Object value) {
+            super.assign(name, value);
+        }
+
+        @Override
+        synchronized void define(String name, Object value) {
+            super.define(name, value);
+        }
+
+        @Override
+        synchronized Map<String, Object> values() {
+            return super.values();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int warmup = 10;
+        int iterations = 20;
+        int[] threadCounts = { 1, 2, 4, 8 };
+        int first = 0;
+
+        while (first < args.length && args[first].startsWith("--")) {
+            if (first + 1 >= args.length) usage();
+            switch (args[first]) {
+                case "--warmup": warmup = Integer.parseInt(args[first + 1]); break;
+                case "--iterations": iterations = Integer.parseInt(args[first + 1]); break;
+                case "--threads": threadCounts = parseCounts(args[first + 1]); break;
+                default: usage();
+            }
+            first += 2;
+        }
+
+        if (args.length - first < 2 || iterations < 1) usage();
+
+        byte[] bytes = Files.readAllBytes(Paths.get(args[first]));
+        String source = new String(bytes, Charset.defaultCharset());
+        List<Stmt> statements = new Parser(new Scanner(source).scanTokens()).parse();
+        if (Zen.hadError) System.exit(65);
+
+        System.out.printf("%d available processors%n", Runtime.getRuntime().availableProcessors());
+        for (int i = first + 1; i < args.length; i++) {
+            String kind = args[i];
+            if (!kind.equals("shared") && !kind.equals("locked")) usage();
+
+            for (int threads : threadCounts) {
+                long elapsed = measure(kind, threads, warmup, iterations, statements);
+                double runs = (double)threads * iterations;
+                System.out.printf("%-8s %3d threads   %10.3f ms   %12.1f runs/s%n",
+                    kind, threads, elapsed / 1e6, runs / (elapsed / 1e9));
+            }
+        }
+    }
+
+    private static long measure(String kind, int threads, int warmup, int iterations,
+                                List<Stmt> statements) throws InterruptedException {
+        Environment globals = kind.equals("shared") ? new SharedEnvironment() : new LockedEnvironment();
+        CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Interpreter interpreter = new Interpreter(globals);
+            workers.add(new Thread(() -> {
+                try {
+                    for (int n = 0; n < warmup; n++) interpreter.interpret(statements);
+                    barrier.await();
+                    for (int n = 0; n < iterations; n++) interpreter.interpret(statements);
+                    barrier.await();
+                } catch (InterruptedException | BrokenBarrierException error) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+
+        PrintStream out = System.out;
+        try {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            for (Thread worker : workers) worker.start();
+
+            barrier.await();
+            long start = System.nanoTime();
+            barrier.await();
+            long elapsed = System.nanoTime() - start;
+
+            for (Thread worker : workers) worker.join();
+            return elapsed;
+        } catch (BrokenBarrierException error) {
+            throw new IllegalStateException(error);
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static int[] parseCounts(String list) {
+        String[] parts = list.split(",");
+        int[] counts = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            counts[i] = Integer.parseInt(parts[i].trim());
+            if (counts[i] < 1) usage();
+        }
+
+        return counts;
+    }
+
+    private static void usage() {
+        System.err.println("Usage: concurrent-benchmark [--warmup n] [--iterations n]" +
+            " [--threads 1,2,4,...] <script> shared|locked...");
+        System.exit(64);
+    }
+}
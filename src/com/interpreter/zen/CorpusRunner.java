@@ -0,0 +1,157 @@
+package com.interpreter.zen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+ * runs every .zen program in a directory through the engine,
+ * compares its output with the golden .expected file next to it
+ * and records how long each program took.
+ *
+ * programs run in-process, each in a fresh interpreter,
+ * so the timings exclude JVM startup and the corpus doubles as a benchmark.
+ * stdout and stderr are captured together, like "2>&1" would.
+ *
+ * with --shared, the interpreters share one SharedEnvironment, so every
+ * program starts with the globals the programs before it in the directory
+ * defined, as with interpreters running on several threads.
+ */
+public class CorpusRunner {
+    public static void main(String[] args) throws IOException {
+        String directory = null;
+        int repeat = 1;
+        boolean record = false;
+        boolean shared = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--parallel-scan":
+                    Zen.parallelScan = true;
+                    break;
+                case "--parallel-parse":
+                    Zen.parallelParse = true;
+                    break;
+                case "--lazy-parse":
+                    Zen.lazyParse = true;
+                    break;
+                case "--infer-types":
+                    Zen.inferTypes = true;
+                    break;
+                case "--eliminate-dead-stores":
+                    Zen.eliminateDeadStores = true;
+                    break;
+                case "--engine":
+                    if (++i >= args.length) usage();
+                    Zen.engine = args[i];
+                    break;
+                case "--record":
+                    record = true;
+                    break;
+                case "--shared":
+                    shared = true;
+                    break;
+                case "--repeat":
+                    if (++i >= args.length) usage();
+                    repeat = Integer.parseInt(args[i]);
+                    break;
+                default:
+                    if (directory != null) usage();
+                    directory = args[i];
+                    break;
+            }
+        }
+
+        if (directory == null || repeat < 1) usage();
+
+        List<Path> programs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(Paths.get(directory))) {
+            files.filter(path -> path.toString().endsWith(".zen"))
+                 .sorted()
+                 .forEach(programs::add);
+        }
+
+        Environment globals = shared ? new SharedEnvironment() : null;
+        int failures = 0;
+        long totalNanos = 0;
+        long totalBytes = 0;
+
+        for (Path program : programs) {
+            String source = new String(Files.readAllBytes(program), Charset.defaultCharset());
+            Path golden = Paths.get(program.toString().replaceAll("\\.zen$", ".expected"));
+
+            // the first run is checked, the fastest run is reported.
+            String output = null;
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < repeat; i++) {
+                long start = System.nanoTime();
+                String result = capture(source, program, globals);
+                best = Math.min(best, System.nanoTime() - start);
+                if (output == null) output = result;
+            }
+
+            String status;
+            if (record) {
+                Files.write(golden, output.getBytes(StandardCharsets.UTF_8));
+                status = "recorded";
+            } else if (!Files.exists(golden)) {
+                status = "no golden";
+            } else if (output.equals(new String(Files.readAllBytes(golden), StandardCharsets.UTF_8))) {
+                status = "ok";
+            } else {
+                status = "FAIL";
+                failures++;
+            }
+
+            totalNanos += best;
+            totalBytes += source.length();
+            System.out.printf("%-40s %-10s %10.3f ms%n",
+                program.getFileName(), status, best / 1e6);
+        }
+
+        System.out.printf("%d programs, %d failed, %.3f ms, %.1f KB/s%n",
+            programs.size(), failures, totalNanos / 1e6,
+            totalNanos == 0 ? 0 : totalBytes / 1024.0 / (totalNanos / 1e9));
+
+        if (failures > 0)
+            System.exit(1);
+    }
+
+    // in a fresh interpreter, on the given globals if they are not null.
+    private static String capture(String source, Path program, Environment globals) {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream stream = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+
+        Zen.hadError = false;
+        Zen.hadRuntimeError = false;
+        try {
+            System.setOut(stream);
+            System.setErr(stream);
+            Interpreter interpreter = globals == null ? new Interpreter() : new Interpreter(globals);
+            interpreter.setInferTypes(Zen.inferTypes);
+            interpreter.setScript(program);
+            Zen.run(source, interpreter);
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void usage() {
+        System.err.println("Usage: run_corpus [--parallel-scan] [--parallel-parse] [--lazy-parse]" +
+            " [--engine name] [--infer-types] [--eliminate-dead-stores] [--repeat n] [--record] [--shared] <directory>");
+        System.exit(64);
+    }
+}
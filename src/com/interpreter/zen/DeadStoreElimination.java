@@ -0,0 +1,321 @@
+package com.interpreter.zen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * removes stores to block variables that are never read afterwards,
+ * and the declarations of block variables that are never read at all.
+ *
+ * a forward pass binds every use of a block variable to its declaration,
+ * then a backward pass tracks which variables are live, i.e. read before
+ * their next store, and rebuilds the statements without the dead ones.
+ * without control flow, liveness is one walk in reverse, so blocks with
+ * loops in them are left as they are.
+ *
+ * a removed store keeps whatever its value does besides producing a value:
+ * only expressions that are side-effect free and cannot throw are dropped,
+ * so the output and the runtime errors stay the same.
+ * globals are never touched, they outlive a single run in the REPL.
+ */
+class DeadStoreElimination {
+    // sentinel, unwinds the pass when it meets an unsupported construct.
+    private static class Unsupported extends RuntimeException {}
+
+    private static class Local {
+        // set once a read or a store of it survives the rewrite.
+        boolean referenced = false;
+    }
+
+    private final Map<Object, Local> locals = new HashMap<>();
+    private final List<Map<String, Local>> scopes = new ArrayList<>();
+    private final Set<Local> live = new HashSet<>();
+
+    private DeadStoreElimination() {}
+
+    // the optimised statements, or the same list when there is nothing to do.
+    static List<Stmt> apply(List<Stmt> statements) {
+        DeadStoreElimination pass = new DeadStoreElimination();
+        List<Stmt> optimised = null;
+
+        // outside of blocks there are only globals, and locals die with their block.
+        for (int i = 0; i < statements.size(); i++) {
+            Stmt statement = statements.get(i);
+            if (!(statement instanceof Stmt.Block)) continue;
+
+            try {
+                pass.resolve(statement);
+            } catch (Unsupported error) {
+                pass.scopes.clear();
+                pass.locals.clear();
+                continue;
+            }
+            if (pass.locals.isEmpty()) continue;
+
+            Stmt block = pass.rewrite(statement);
+            pass.locals.clear();
+            if (block == statement) continue;
+
+            if (optimised == null) optimised = new ArrayList<>(statements);
+            optimised.set(i, block);
+        }
+
+        if (optimised == null)
+            return statements;
+
+        optimised.removeIf(statement -> statement == null);
+        return optimised;
+    }
+
+    private void resolve(Stmt stmt) {
+        if (stmt instanceof Stmt.Block) {
+            scopes.add(new HashMap<>());
+            for (Stmt statement : ((Stmt.Block)stmt).statements) {
+                resolve(statement);
+            }
+            scopes.remove(scopes.size() - 1);
+        } else if (stmt instanceof Stmt.Var) {
+            Stmt.Var var = (Stmt.Var)stmt;
+            if (var.initializer != null)
+                resolve(var.initializer);
+            if (scopes.isEmpty())
+                return;
+
+            // the Interpreter defines the name after evaluating the initializer.
+            Local local = new Local();
+            scopes.get(scopes.size() - 1).put(var.name.lexeme, local);
+            locals.put(var, local);
+        } else if (stmt instanceof Stmt.Expression) {
+            resolve(((Stmt.Expression)stmt).expression);
+        } else if (stmt instanceof Stmt.Print) {
+            resolve(((Stmt.Print)stmt).expression);
+        } else {
+            throw new Unsupported();
+        }
+    }
+
+    private void resolve(Expr expr) {
+        if (expr instanceof Expr.Assign) {
+            Expr.Assign assign = (Expr.Assign)expr;
+            resolve(assign.value);
+            bind(assign, assign.name);
+        } else if (expr instanceof Expr.Binary) {
+            resolve(((Expr.Binary)expr).left);
+            resolve(((Expr.Binary)expr).right);
+        } else if (expr instanceof Expr.Grouping) {
+            resolve(((Expr.Grouping)expr).expression);
+        } else if (expr instanceof Expr.Unary) {
+            resolve(((Expr.Unary)expr).right);
+        } else if (expr instanceof Expr.Variable) {
+            bind(expr, ((Expr.Variable)expr).name);
+        } else if (!(expr instanceof Expr.Literal)) {
+            throw new Unsupported();
+        }
+    }
+
+    private void bind(Expr expr, Token name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Local local = scopes.get(i).get(name.lexeme);
+            if (local != null) {
+                locals.put(expr, local);
+                return;
+            }
+        }
+    }
+
+    // statements are visited last to first, expressions in reverse evaluation order.
+    // nodes are only rebuilt when something below them changed.
+    private List<Stmt> rewrite(List<Stmt> statements) {
+        List<Stmt> kept = new ArrayList<>(statements.size());
+        boolean changed = false;
+        for (int i = statements.size() - 1; i >= 0; i--) {
+            Stmt statement = rewrite(statements.get(i));
+            if (statement != null) kept.add(statement);
+            changed |= statement != statements.get(i);
+        }
+
+        if (!changed) return statements;
+        Collections.reverse(kept);
+        return kept;
+    }
+
+    private Stmt rewrite(Stmt stmt) {
+        if (stmt instanceof Stmt.Block) {
+            List<Stmt> statements = ((Stmt.Block)stmt).statements;
+            List<Stmt> body = rewrite(statements);
+            if (body.isEmpty()) return null;
+            return body == statements ? stmt : new Stmt.Block(body);
+        }
+        if (stmt instanceof Stmt.Expression) {
+            Expr expression = ((Stmt.Expression)stmt).expression;
+            Expr effects = effects(expression);
+            if (effects == null) return null;
+            return effects == expression ? stmt
+                : new Stmt.Expression(effects, ((Stmt.Expression)stmt).semicolon);
+        }
+        if (stmt instanceof Stmt.Print) {
+            Expr expression = ((Stmt.Print)stmt).expression;
+            Expr value = value(expression);
+            return value == expression ? stmt : new Stmt.Print(((Stmt.Print)stmt).keyword, value);
+        }
+
+        Stmt.Var var = (Stmt.Var)stmt;
+        Local local = locals.get(var);
+        if (local == null) {
+            return var.initializer == null ? var : withInitializer(var, value(var.initializer));
+        }
+
+        // never read: only the effects of the initializer remain.
+        if (!local.referenced) {
+            Expr effects = var.initializer == null ? null : effects(var.initializer);
+            // placed where the declaration was.
+            return effects == null ? null : new Stmt.Expression(effects, var.name);
+        }
+
+        boolean dead = !live.remove(local);
+        if (var.initializer == null) return var;
+
+        // a literal costs nothing and still tells TypeInference what the variable holds.
+        if (dead && pure(var.initializer) && !(var.initializer instanceof Expr.Literal)) {
+            return new Stmt.Var(var.name, null);
+        }
+
+        return withInitializer(var, value(var.initializer));
+    }
+
+    private static Stmt withInitializer(Stmt.Var var, Expr initializer) {
+        return initializer == var.initializer ? var : new Stmt.Var(var.name, initializer);
+    }
+
+    // the expression whose value is used, without its dead stores.
+    private Expr value(Expr expr) {
+        if (expr instanceof Expr.Assign) {
+            Expr.Assign assign = (Expr.Assign)expr;
+            Local local = locals.get(assign);
+            // an assignment evaluates to the value it stores.
+            if (local != null && !live.remove(local)) {
+                return value(assign.value);
+            }
+
+            if (local != null) local.referenced = true;
+            Expr value = value(assign.value);
+            return value == assign.value ? expr : new Expr.Assign(assign.name, value);
+        }
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)expr;
+            Expr right = value(binary.right);
+            Expr left = value(binary.left);
+            if (left == binary.left && right == binary.right) return expr;
+            return new Expr.Binary(left, binary.operator, right);
+        }
+        if (expr instanceof Expr.Grouping) {
+            Expr inner = ((Expr.Grouping)expr).expression;
+            Expr value = value(inner);
+            return value == inner ? expr : new Expr.Grouping(value);
+        }
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary)expr;
+            Expr right = value(unary.right);
+            return right == unary.right ? expr : new Expr.Unary(unary.operator, right);
+        }
+        if (expr instanceof Expr.Variable) {
+            Local local = locals.get(expr);
+            if (local != null) {
+                local.referenced = true;
+                live.add(local);
+            }
+        }
+
+        return expr;
+    }
+
+    // what is left of an expression whose value is unused, null for nothing.
+    private Expr effects(Expr expr) {
+        if (pure(expr))
+            return null;
+
+        if (expr instanceof Expr.Assign) {
+            Local local = locals.get(expr);
+            if (local != null && !live.contains(local)) {
+                return effects(((Expr.Assign)expr).value);
+            }
+        } else if (expr instanceof Expr.Grouping) {
+            return effects(((Expr.Grouping)expr).expression);
+        } else if (expr instanceof Expr.Unary && ((Expr.Unary)expr).operator.type == TokenType.NOT) {
+            return effects(((Expr.Unary)expr).right);
+        }
+
+        return value(expr);
+    }
+
+    /*
+     * side-effect free and cannot throw: reads of block variables, which are
+     * always defined, and operators whose operand types are known to fit.
+     */
+    private boolean pure(Expr expr) {
+        if (expr instanceof Expr.Literal) return true;
+        if (expr instanceof Expr.Variable) return locals.containsKey(expr);
+        if (expr instanceof Expr.Grouping) return pure(((Expr.Grouping)expr).expression);
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary)expr;
+            return unary.operator.type == TokenType.NOT ? pure(unary.right) : isNumber(unary.right);
+        }
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)expr;
+            switch (binary.operator.type) {
+                case EQUAL_EQUAL:
+                case NOT_EQUAL:
+                    return pure(binary.left) && pure(binary.right);
+                case PLUS:
+                    return isNumber(binary.left) && isNumber(binary.right) ||
+                           isString(binary.left) && isString(binary.right);
+                default:
+                    return isNumber(binary.left) && isNumber(binary.right);
+            }
+        }
+
+        return false;
+    }
+
+    // pure and statically a number.
+    private boolean isNumber(Expr expr) {
+        if (expr instanceof Expr.Literal) return ((Expr.Literal)expr).value instanceof Double;
+        if (expr instanceof Expr.Grouping) return isNumber(((Expr.Grouping)expr).expression);
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary)expr;
+            return unary.operator.type == TokenType.MINUS && isNumber(unary.right);
+        }
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)expr;
+            switch (binary.operator.type) {
+                case MINUS:
+                case SLASH:
+                case STAR:
+                case PLUS:
+                    return isNumber(binary.left) && isNumber(binary.right);
+                default:
+                    return false;
+            }
+        }
+
+        return false;
+    }
+
+    // pure and statically a string.
+    private boolean isString(Expr expr) {
+        if (expr instanceof Expr.Literal) return ((Expr.Literal)expr).value instanceof String;
+        if (expr instanceof Expr.Grouping) return isString(((Expr.Grouping)expr).expression);
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)expr;
+            return binary.operator.type == TokenType.PLUS &&
+                   isString(binary.left) && isString(binary.right);
+        }
+
+        return false;
+    }
+}
@@ -1,18 +1,52 @@
 package com.interpreter.zen;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 class Environment {
+    private static final double[] NO_NUMBERS = new double[0];
+
     final Environment enclosing;
-    private final Map<String, Object> values = new HashMap<>();
+    private Map<String, Object> values = new HashMap<>();
+
+    // unboxed frame for the variables TypeInference proved numeric,
+    // the Interpreter addresses them by slot instead of by name.
+    final double[] numbers;
 
     Environment() {
         enclosing = null;
+        numbers = NO_NUMBERS;
     }
 
     Environment(Environment enclosing) {
+        this(enclosing, 0);
+    }
+
+    Environment(Environment enclosing, int numberSlots) {
         this.enclosing = enclosing;
+        this.numbers = numberSlots == 0 ? NO_NUMBERS : new double[numberSlots];
+    }
+
+    // the same, with room for the variables a Profile says the block defines.
+    Environment(Environment enclosing, int numberSlots, int variables) {
+        this(enclosing, numberSlots);
+        reserve(variables);
+    }
+
+    // makes room for that many variables up front, while the environment is still empty.
+    void reserve(int variables) {
+        if (variables > 0 && values.isEmpty())
+            values = new HashMap<>(variables * 4 / 3 + 1);
+    }
+
+    Environment ancestor(int distance) {
+        Environment environment = this;
+        for (int i = 0; i < distance; i++) {
+            environment = environment.enclosing;
+        }
+
+        return environment;
     }
 
     /* if the variable is found in HashMap,
@@ -56,4 +90,17 @@ class Environment {
     void define(String name, Object value) {
         values.put(name, value);
     }
+
+    // forgets the bindings, so that a loop can run its body in the same
+    // environment every iteration. the numbers frame is left as it is,
+    // numeric locals are always written before they are read.
+    void clear() {
+        if (!values.isEmpty())
+            values.clear();
+    }
+
+    // read-only view of the bindings in this scope, used by Snapshot.
+    Map<String, Object> values() {
+        return Collections.unmodifiableMap(values);
+    }
 }
@@ -1,11 +1,18 @@
 package com.interpreter.zen;
 
+import java.util.List;
+
 abstract class Expr {
     interface Visitor<R> {
         R visitAssignExpr(Assign expr);
         R visitBinaryExpr(Binary expr);
+        R visitCallExpr(Call expr);
+        R visitGetExpr(Get expr);
         R visitGroupingExpr(Grouping expr);
         R visitLiteralExpr(Literal expr);
+        R visitSetExpr(Set expr);
+        R visitSuperExpr(Super expr);
+        R visitThisExpr(This expr);
         R visitUnaryExpr(Unary expr);
         R visitVariableExpr(Variable expr);
     }
@@ -39,6 +46,38 @@ abstract class Expr {
         final Token operator;
         final Expr right;
     }
+    static class Call extends Expr {
+        Call(Expr callee, Token paren, List<Expr> arguments) {
+            this.callee = callee;
+            this.paren = paren;
+            this.arguments = arguments;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitCallExpr(this);
+        }
+
+        final Expr callee;
+        final Token paren;
+        final List<Expr> arguments;
+    }
+    static class Get extends Expr {
+        Get(Expr object, Token name, InlineCache cache) {
+            this.object = object;
+            this.name = name;
+            this.cache = cache;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitGetExpr(this);
+        }
+
+        final Expr object;
+        final Token name;
+        final InlineCache cache;
+    }
     static class Grouping extends Expr {
         Grouping(Expr expression) {
             this.expression = expression;
@@ -63,6 +102,50 @@ abstract class Expr {
 
         final Object value;
     }
+    static class Set extends Expr {
+        Set(Expr object, Token name, Expr value, InlineCache cache) {
+            this.object = object;
+            this.name = name;
+            this.value = value;
+            this.cache = cache;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSetExpr(this);
+        }
+
+        final Expr object;
+        final Token name;
+        final Expr value;
+        final InlineCache cache;
+    }
+    static class Super extends Expr {
+        Super(Token keyword, Token method) {
+            this.keyword = keyword;
+            this.method = method;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSuperExpr(this);
+        }
+
+        final Token keyword;
+        final Token method;
+    }
+    static class This extends Expr {
+        This(Token keyword) {
+            this.keyword = keyword;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitThisExpr(this);
+        }
+
+        final Token keyword;
+    }
     static class Unary extends Expr {
         Unary(Token operator, Expr right) {
             this.operator = operator;
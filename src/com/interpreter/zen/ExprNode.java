@@ -0,0 +1,17 @@
+package com.interpreter.zen;
+
+import java.util.List;
+
+sealed interface ExprNode {
+    record Assign(Token name, ExprNode value) implements ExprNode {}
+    record Binary(ExprNode left, Token operator, ExprNode right) implements ExprNode {}
+    record Call(ExprNode callee, Token paren, List<ExprNode> arguments) implements ExprNode {}
+    record Get(ExprNode object, Token name, InlineCache cache) implements ExprNode {}
+    record Grouping(ExprNode expression) implements ExprNode {}
+    record Literal(Object value) implements ExprNode {}
+    record Set(ExprNode object, Token name, ExprNode value, InlineCache cache) implements ExprNode {}
+    record Super(Token keyword, Token method) implements ExprNode {}
+    record This(Token keyword) implements ExprNode {}
+    record Unary(Token operator, ExprNode right) implements ExprNode {}
+    record Variable(Token name) implements ExprNode {}
+}
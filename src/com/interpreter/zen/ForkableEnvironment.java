@@ -0,0 +1,80 @@
+package com.interpreter.zen;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * global environment that can be forked in constant time, e.g. to run many
+ * scripts against one initialised state without copying it for each of them.
+ *
+ * the bindings are a PersistentMap: a fork starts out with the same map as
+ * its base, and every define or assign replaces only the fork's own map,
+ * copying the few trie nodes on the path to the changed name.
+ * base and fork never see each other's changes after the fork.
+ * one environment is still for one interpreter at a time, but a base can be
+ * forked from any thread while no other one changes it.
+ */
+class ForkableEnvironment extends Environment {
+    private PersistentMap values;
+
+    ForkableEnvironment() {
+        this(PersistentMap.EMPTY);
+    }
+
+    private ForkableEnvironment(PersistentMap values) {
+        this.values = values;
+    }
+
+    ForkableEnvironment fork() {
+        return new ForkableEnvironment(values);
+    }
+
+    @Override
+    Object get(Token name) {
+        Object value = values.get(name.lexeme, this);
+        if (value == this) {
+            throw new RuntimeError(
+                name,
+                "Undefined variable '" + name.lexeme + "'."
+            );
+        }
+
+        return value;
+    }
+
+    @Override
+    void assign(Token name, Object value) {
+        if (!values.containsKey(name.lexeme)) {
+            throw new RuntimeError(
+                name,
+                "Undefined variable'" + name.lexeme + "'."
+            );
+        }
+
+        values = values.put(name.lexeme, value);
+    }
+
+    @Override
+    void define(String name, Object value) {
+        values = values.put(name, value);
+    }
+
+    // a trie has no capacity to set up front, and the inherited map is never used.
+    @Override
+    void reserve(int variables) {
+    }
+
+    // only this environment's map is dropped, its forks keep theirs.
+    @Override
+    void clear() {
+        values = PersistentMap.EMPTY;
+    }
+
+    @Override
+    Map<String, Object> values() {
+        Map<String, Object> copy = new HashMap<>();
+        values.forEach(copy::put);
+        return Collections.unmodifiableMap(copy);
+    }
+}
@@ -0,0 +1,101 @@
+package com.interpreter.zen;
+
+/*
+ * remembers what a property name meant for the shapes of the instances
+ * that one get or set expression has seen.
+ *
+ * the first shape makes the site monomorphic: one comparison of the shape,
+ * then the slot or method it had. up to POLYMORPHIC_LIMIT shapes are kept
+ * and compared in turn. a site that sees more is megamorphic: it stops
+ * caching and asks each shape, which keeps its own table of every name.
+ *
+ * entries are immutable and the array is replaced instead of changed,
+ * so sites shared by interpreters on other threads never see half an entry.
+ * at worst, a racing update is lost and the shape is looked up again.
+ */
+final class InlineCache {
+    static final int POLYMORPHIC_LIMIT = 4;
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    // what a name means for instances of one shape.
+    static final class Entry {
+        final Shape shape;
+
+        // the field's slot, -1 for a method.
+        final int slot;
+
+        // the method a get finds in the class, unbound.
+        final ZenFunction method;
+
+        // the shape a set moves the instance to when it adds the field, null if it has it.
+        final Shape transition;
+
+        Entry(Shape shape, int slot, ZenFunction method, Shape transition) {
+            this.shape = shape;
+            this.slot = slot;
+            this.method = method;
+            this.transition = transition;
+        }
+    }
+
+    private volatile Entry[] entries = EMPTY;
+    private volatile boolean megamorphic = false;
+
+    // for a get, null if the property is undefined.
+    Entry get(Shape shape, String name) {
+        Entry[] entries = this.entries;
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].shape == shape) return entries[i];
+        }
+
+        Entry entry = shape.get(name);
+        if (entry != null)
+            remember(entry);
+        return entry;
+    }
+
+    Entry set(Shape shape, String name) {
+        Entry[] entries = this.entries;
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].shape == shape) return entries[i];
+        }
+
+        Entry entry = shape.set(name);
+        remember(entry);
+        return entry;
+    }
+
+    // forgets every shape, for a new run of the same code on new classes.
+    void reset() {
+        entries = EMPTY;
+        megamorphic = false;
+    }
+
+    // "uninitialized", "monomorphic", "polymorphic" or "megamorphic".
+    String state() {
+        if (megamorphic) return "megamorphic";
+        switch (entries.length) {
+            case 0: return "uninitialized";
+            case 1: return "monomorphic";
+            default: return "polymorphic";
+        }
+    }
+
+    private void remember(Entry entry) {
+        if (megamorphic)
+            return;
+
+        Entry[] entries = this.entries;
+        if (entries.length == POLYMORPHIC_LIMIT) {
+            megamorphic = true;
+            this.entries = EMPTY;
+            return;
+        }
+
+        Entry[] grown = new Entry[entries.length + 1];
+        System.arraycopy(entries, 0, grown, 0, entries.length);
+        grown[entries.length] = entry;
+        this.entries = grown;
+    }
+}
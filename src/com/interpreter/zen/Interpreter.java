@@ -1,12 +1,148 @@
 package com.interpreter.zen;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 class Interpreter implements Expr.Visitor<Object>,
                              Stmt.Visitor<Void> {
     // instance stored as a field because:
     // the variables should be in memory as long as the interpreter is running.
-    private Environment environment = new Environment();
+    // globals is kept separately so that it can be snapshotted and restored,
+    // or shared with interpreters on other threads through a SharedEnvironment.
+    final Environment globals;
+    private Environment environment;
+
+    /*
+     * budget bookkeeping, reset for every call to interpret(), or once when streaming.
+     * tick() only compares steps against nextCheck,
+     * the clock and the remaining limits are consulted every CHECK_INTERVAL steps.
+     */
+    private static final long CHECK_INTERVAL = 1024;
+    private Budget budget = new Budget();
+    private long steps;
+    private long nextCheck;
+    private long deadline;
+    private int depth;
+    private boolean streaming = false;
+
+    // imports resolve against the directory of the script or module they are in,
+    // and every module runs once per interpreter, see Modules.
+    private Path directory = Paths.get("");
+    private final Set<Path> imported = new HashSet<>();
+
+    /*
+     * functions lay out their frames the first time they are declared, see Resolver.
+     * while one runs, its layout is in layout, its parameters and locals in frame,
+     * the variables it captured in cells, and environment is the one it was
+     * declared in. layout and frame are null outside of functions.
+     */
+    private final Resolver resolver = new Resolver();
+    private Resolver.Layout layout = null;
+    private Object[] frame = null;
+    private ZenFunction.Cell[] cells = null;
+
+    /*
+     * return is a flag instead of an exception: it is set by the return
+     * statement and every statement list of a function body stops there,
+     * until call() takes the value. returning a call hands over the callee
+     * and its frame instead, and call() runs them in its own loop, so tail
+     * calls do not grow the Java stack.
+     */
+    private boolean returning = false;
+    private Object returnValue = null;
+    private ZenFunction tailCallee = null;
+    private Object[] tailFrame = null;
+
+    // whether a loop body declares a function, which keeps its environment, see visitWhileStmt.
+    private final Map<Stmt, Boolean> declaresFunction = new HashMap<>();
+
+    // iteration counts of every loop, only kept with --profile-loops.
+    private LoopProfile loopProfile = null;
+
+    // what this run records for the next ones, and what an earlier run recorded, see Profile.
+    private Profile recording = null;
+    private Profile profile = null;
+
+    // results of TypeInference for the statements being interpreted,
+    // numeric block variables live unboxed in their Environment's frame.
+    // the analysis only pays off for code that runs more than once, so it is opt-in.
+    private boolean inferTypes = false;
+    private Map<Object, TypeInference.Slot> slots = Collections.emptyMap();
+    private Map<Stmt.Block, Integer> frameSizes = Collections.emptyMap();
+    private Set<Expr> numericOperands = Collections.emptySet();
+
+    Interpreter() {
+        this(new Environment());
+    }
+
+    Interpreter(Environment globals) {
+        this.globals = globals;
+        this.environment = globals;
+    }
+
+    void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    void setInferTypes(boolean inferTypes) {
+        this.inferTypes = inferTypes;
+    }
+
+    void setLoopProfile(LoopProfile loopProfile) {
+        this.loopProfile = loopProfile;
+    }
+
+    LoopProfile loopProfile() {
+        return loopProfile;
+    }
+
+    void setRecording(Profile recording) {
+        this.recording = recording;
+    }
+
+    Profile recording() {
+        return recording;
+    }
+
+    void setProfile(Profile profile) {
+        this.profile = profile;
+        if (profile != null)
+            globals.reserve(profile.globals());
+    }
+
+    // the file the statements come from, which counts as imported already.
+    void setScript(Path path) {
+        Path script = path.toAbsolutePath().normalize();
+        directory = script.getParent();
+        imported.add(script);
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    // while streaming, every statement is interpreted on its own,
+    // and the budget covers all of them from here on instead of each call.
+    void startStreaming() {
+        streaming = true;
+        startBudget();
+    }
+
+    private void startBudget() {
+        steps = 0;
+        nextCheck = Math.min(CHECK_INTERVAL, budget.maxSteps);
+        // toNanos() saturates, and checkBudget() compares by difference,
+        // so even a timeout too long to be reached never expires.
+        deadline = budget.timeoutMillis == 0 ? 0 :
+            System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget.timeoutMillis);
+    }
 
     @Override
     public Object visitLiteralExpr(Expr.Literal expr) {
@@ -20,6 +156,11 @@ class Interpreter implements Expr.Visitor<Object>,
 
     @Override
     public Object visitUnaryExpr(Expr.Unary expr) {
+        if (numericOperands.contains(expr))
+            return evaluateNumber(expr);
+
+        tick(expr.operator);
+
         // right expression
         Object right = evaluate(expr.right);
 
@@ -40,13 +181,29 @@ class Interpreter implements Expr.Visitor<Object>,
 
     @Override
     public Object visitVariableExpr(Expr.Variable expr) {
+        if (frame != null) {
+            tick(expr.name);
+            return lookUp(expr, expr.name);
+        }
+
+        if (isNumeric(expr))
+            return evaluateNumber(expr);
+
+        tick(expr.name);
         return environment.get(expr.name);
     }
 
     @Override
     public Object visitBinaryExpr(Expr.Binary expr) {
+        if (numericOperands.contains(expr))
+            return binaryNumber(expr);
+
+        tick(expr.operator);
+
         Object left = evaluate(expr.left);
         Object right = evaluate(expr.right);
+        if (recording != null)
+            recording.operands(expr, left, right);
 
         switch (expr.operator.type) {
             case MINUS:
@@ -66,7 +223,8 @@ class Interpreter implements Expr.Visitor<Object>,
                     return (double)left + (double)right;
                 }
                 if (left instanceof String && right instanceof String) {
-                    return (String)left + (String)right;
+                    checkStringLength(expr.operator, (String)left, (String)right);
+                    return concatenate((String)left, (String)right);
                 }
                 
                 throw new RuntimeError(expr.operator, 
@@ -96,7 +254,262 @@ class Interpreter implements Expr.Visitor<Object>,
         return null;
     }
 
+    @Override
+    public Object visitCallExpr(Expr.Call expr) {
+        return call(expr, false);
+    }
+
+    /*
+     * a method called on an instance or on super gets the instance as its
+     * receiver directly, without a bound method in between. with tail set,
+     * a function is not run but handed over to call(), see visitReturnStmt.
+     */
+    private Object call(Expr.Call expr, boolean tail) {
+        tick(expr.paren);
+
+        Object callee;
+        Object receiver = null;
+        if (expr.callee instanceof Expr.Get) {
+            Expr.Get get = (Expr.Get)expr.callee;
+            tick(get.name);
+            Object object = evaluate(get.object);
+            InlineCache.Entry entry = object instanceof ZenInstance
+                ? get.cache.get(((ZenInstance)object).shape, get.name.lexeme) : null;
+            if (entry != null && entry.method != null) {
+                callee = entry.method;
+                receiver = object;
+            } else {
+                callee = property(get, object);
+            }
+        } else if (expr.callee instanceof Expr.Super) {
+            Expr.Super method = (Expr.Super)expr.callee;
+            tick(method.keyword);
+            callee = superMethod(method);
+            receiver = lookUp(method, method.keyword);
+        } else {
+            callee = evaluate(expr.callee);
+        }
+
+        Object[] frame = arguments(expr, callee);
+        if (callee instanceof ZenClass) {
+            ZenClass klass = (ZenClass)callee;
+            ZenInstance instance = klass.instantiate();
+            if (klass.initializer != null) {
+                frame[klass.initializer.layout.thisSlot] = instance;
+                call(klass.initializer, frame, expr.paren);
+            }
+            return instance;
+        }
+
+        ZenFunction function = (ZenFunction)callee;
+        if (function.layout.thisSlot >= 0)
+            frame[function.layout.thisSlot] = receiver != null ? receiver : function.receiver;
+
+        if (tail) {
+            tailCallee = function;
+            tailFrame = frame;
+            return null;
+        }
+        return call(function, frame, expr.paren);
+    }
+
+    // the arguments of a call, evaluated into the first slots of the frame the callee runs in.
+    // a class takes the arguments of its initializer, none if it has no initializer.
+    private Object[] arguments(Expr.Call expr, Object callee) {
+        List<Expr> arguments = expr.arguments;
+        ZenFunction function = callee instanceof ZenFunction ? (ZenFunction)callee :
+            callee instanceof ZenClass ? ((ZenClass)callee).initializer : null;
+        int size = arguments.size();
+        if (function != null) {
+            if (function.layout == null)
+                function.layout = resolver.layout(function.declaration);
+            size = Math.max(size, function.layout.frameSize);
+        }
+
+        Object[] frame = new Object[size];
+        for (int i = 0; i < arguments.size(); i++) {
+            frame[i] = evaluate(arguments.get(i));
+        }
+
+        if (!(callee instanceof ZenFunction) && !(callee instanceof ZenClass))
+            throw new RuntimeError(expr.paren, "Can only call functions and classes.");
+        int arity = function == null ? 0 : function.arity();
+        if (arguments.size() != arity) {
+            throw new RuntimeError(expr.paren, "Expected " + arity +
+                " arguments but got " + arguments.size() + ".");
+        }
+
+        return frame;
+    }
+
+    @Override
+    public Object visitGetExpr(Expr.Get expr) {
+        tick(expr.name);
+        return property(expr, evaluate(expr.object));
+    }
+
+    // a field, or a method bound to the instance.
+    private Object property(Expr.Get expr, Object object) {
+        if (!(object instanceof ZenInstance))
+            throw new RuntimeError(expr.name, "Only instances have properties.");
+
+        ZenInstance instance = (ZenInstance)object;
+        InlineCache.Entry entry = expr.cache.get(instance.shape, expr.name.lexeme);
+        if (entry == null)
+            throw new RuntimeError(expr.name, "Undefined property '" + expr.name.lexeme + "'.");
+
+        return entry.method == null ? instance.fields[entry.slot] : entry.method.bind(instance);
+    }
+
+    @Override
+    public Object visitSetExpr(Expr.Set expr) {
+        tick(expr.name);
+
+        Object object = evaluate(expr.object);
+        if (!(object instanceof ZenInstance))
+            throw new RuntimeError(expr.name, "Only instances have fields.");
+
+        ZenInstance instance = (ZenInstance)object;
+        Object value = evaluate(expr.value);
+        instance.store(expr.cache.set(instance.shape, expr.name.lexeme), value);
+        return value;
+    }
+
+    @Override
+    public Object visitThisExpr(Expr.This expr) {
+        tick(expr.keyword);
+        return lookUp(expr, expr.keyword);
+    }
+
+    @Override
+    public Object visitSuperExpr(Expr.Super expr) {
+        tick(expr.keyword);
+        ZenFunction method = superMethod(expr);
+        return method.bind((ZenInstance)lookUp(expr, expr.keyword));
+    }
+
+    // the method of the superclass of the class whose method the expression is in, unbound.
+    private ZenFunction superMethod(Expr.Super expr) {
+        ZenClass superclass = (ZenClass)environment.get(expr.keyword);
+        ZenFunction method = superclass.findMethod(expr.method.lexeme);
+        if (method == null)
+            throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme + "'.");
+
+        return method;
+    }
+
+    private Object call(ZenFunction function, Object[] frame, Token paren) {
+        Environment previousEnvironment = environment;
+        Resolver.Layout previousLayout = layout;
+        Object[] previousFrame = this.frame;
+        ZenFunction.Cell[] previousCells = cells;
+
+        // calls count against the depth limit like blocks.
+        if (++depth > budget.maxDepth)
+            nextCheck = steps;
+
+        try {
+            for (;;) {
+                for (int index : function.layout.capturedParams) {
+                    frame[index] = new ZenFunction.Cell(frame[index]);
+                }
+
+                environment = function.closure;
+                layout = function.layout;
+                this.frame = frame;
+                cells = function.cells;
+                run(function.declaration.body);
+
+                if (tailCallee == null) {
+                    // init() returns its instance, even when called again on it.
+                    if (function.initializer) {
+                        Object self = frame[function.layout.thisSlot];
+                        returnValue = self instanceof ZenFunction.Cell ? ((ZenFunction.Cell)self).value : self;
+                    }
+                    break;
+                }
+
+                function = tailCallee;
+                frame = tailFrame;
+                tailCallee = null;
+                tailFrame = null;
+                returning = false;
+            }
+
+            Object value = returnValue;
+            returnValue = null;
+            returning = false;
+            return value;
+        } catch (StackOverflowError error) {
+            throw new RuntimeError(paren, "Stack overflow.");
+        } finally {
+            environment = previousEnvironment;
+            layout = previousLayout;
+            this.frame = previousFrame;
+            cells = previousCells;
+            depth--;
+        }
+    }
+
+    // the statements of a function body, up to a return.
+    private void run(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            execute(statement);
+            if (returning) return;
+        }
+    }
+
+    private Object lookUp(Expr expr, Token name) {
+        Resolver.Binding binding = layout == null ? null : layout.binding(expr);
+        if (binding == null)
+            return environment.get(name);
+        if (binding.local == null)
+            return cells[binding.capture].value;
+
+        Object value = frame[binding.local.index];
+        return binding.local.captured ? ((ZenFunction.Cell)value).value : value;
+    }
+
+    private void assign(Expr.Assign expr, Object value) {
+        Resolver.Binding binding = layout == null ? null : layout.binding(expr);
+        if (binding == null) {
+            environment.assign(expr.name, value);
+        } else if (binding.local == null) {
+            cells[binding.capture].value = value;
+        } else if (binding.local.captured) {
+            ((ZenFunction.Cell)frame[binding.local.index]).value = value;
+        } else {
+            frame[binding.local.index] = value;
+        }
+    }
+
+    // a captured variable gets a new cell every time its declaration runs,
+    // so that every closure keeps the variable of its own block run.
+    private void declare(Resolver.Local local, Stmt declaration, Object value) {
+        if (!local.captured) {
+            frame[local.index] = value;
+        } else if (local.declaration == declaration) {
+            frame[local.index] = new ZenFunction.Cell(value);
+        } else {
+            ((ZenFunction.Cell)frame[local.index]).value = value;
+        }
+    }
+
     void interpret(List<Stmt> statements) {
+        TypeInference types = new TypeInference();
+        if (inferTypes && types.analyze(statements)) {
+            slots = types.slots();
+            frameSizes = types.frameSizes();
+            numericOperands = types.numericOperands();
+        } else {
+            slots = Collections.emptyMap();
+            frameSizes = Collections.emptyMap();
+            numericOperands = Collections.emptySet();
+        }
+
+        if (!streaming)
+            startBudget();
+
         try {
             for (Stmt statement : statements) {
                 execute(statement);
@@ -110,7 +523,84 @@ class Interpreter implements Expr.Visitor<Object>,
         return expr.accept(this);
     }
 
+    /*
+     * evaluates an expression TypeInference proved to be a number, without boxing
+     * numeric variables, literals and operators on them. anything else goes
+     * through evaluate(), which already checks that the result is a number.
+     * ticks happen in the same order as on the general path.
+     */
+    private double evaluateNumber(Expr expr) {
+        if (expr instanceof Expr.Literal) {
+            return (double)((Expr.Literal)expr).value;
+        }
+        if (expr instanceof Expr.Grouping) {
+            return evaluateNumber(((Expr.Grouping)expr).expression);
+        }
+        if (expr instanceof Expr.Variable) {
+            Expr.Variable variable = (Expr.Variable)expr;
+            TypeInference.Slot slot = slots.get(variable);
+            tick(variable.name);
+            return environment.ancestor(slot.distance).numbers[slot.local.index];
+        }
+        if (expr instanceof Expr.Assign) {
+            Expr.Assign assign = (Expr.Assign)expr;
+            TypeInference.Slot slot = slots.get(assign);
+            if (slot != null && slot.local.numeric) {
+                tick(assign.name);
+                double value = evaluateNumber(assign.value);
+                environment.ancestor(slot.distance).numbers[slot.local.index] = value;
+                return value;
+            }
+        }
+        if (expr instanceof Expr.Unary && numericOperands.contains(expr)) {
+            tick(((Expr.Unary)expr).operator);
+            return -evaluateNumber(((Expr.Unary)expr).right);
+        }
+        if (expr instanceof Expr.Binary && numericOperands.contains(expr)) {
+            return (double)binaryNumber((Expr.Binary)expr);
+        }
+
+        return (double)evaluate(expr);
+    }
+
+    // a variable or assignment bound to a numeric block variable.
+    private boolean isNumeric(Expr expr) {
+        TypeInference.Slot slot = slots.get(expr);
+        return slot != null && slot.local.numeric;
+    }
+
+    // a binary operator whose operands are both statically numbers.
+    private Object binaryNumber(Expr.Binary expr) {
+        tick(expr.operator);
+        double left = evaluateNumber(expr.left);
+        double right = evaluateNumber(expr.right);
+        if (recording != null)
+            recording.operands(expr, Profile.NUMBERS);
+
+        switch (expr.operator.type) {
+            case MINUS: return left - right;
+            case SLASH: return left / right;
+            case STAR: return left * right;
+            case PLUS: return left + right;
+            case GREATER: return left > right;
+            case GREATER_EQUAL: return left >= right;
+            case LESS: return left < right;
+            case LESS_EQUAL: return left <= right;
+
+            // Double.equals(), as used by isEqual().
+            case NOT_EQUAL:
+                return Double.doubleToLongBits(left) != Double.doubleToLongBits(right);
+            case EQUAL_EQUAL:
+                return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+
+            default:
+                return null;
+        }
+    }
+
     private void execute(Stmt stmt) {
+        if (recording != null)
+            recording.executed(stmt);
         stmt.accept(this);
     }
 
@@ -119,6 +609,12 @@ class Interpreter implements Expr.Visitor<Object>,
         Environment environment
     ) {
         Environment previous = this.environment;
+
+        // the block has no token of its own to blame,
+        // so the next tick inside it reports the breach instead.
+        if (++depth > budget.maxDepth)
+            nextCheck = steps;
+
         try {
             this.environment = environment;
 
@@ -127,12 +623,24 @@ class Interpreter implements Expr.Visitor<Object>,
             }
         } finally {
             this.environment = previous;
+            depth--;
         }
     }
 
     @Override
     public Void visitBlockStmt(Stmt.Block stmt) {
-        executeBlock(stmt.statements, new Environment(environment));
+        // the variables of blocks in functions have their slots in the frame.
+        if (frame != null) {
+            run(stmt.statements);
+            return null;
+        }
+
+        Integer numbers = frameSizes.get(stmt);
+        Environment block = new Environment(environment, numbers == null ? 0 : numbers,
+            profile == null ? 0 : profile.variables(stmt));
+        executeBlock(stmt.statements, block);
+        if (recording != null)
+            recording.environment(stmt, block.values().size());
         return null;
     }
 
@@ -142,6 +650,123 @@ class Interpreter implements Expr.Visitor<Object>,
         return null;
     }
     
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        tick(stmt.name);
+
+        // outside of functions there is nothing to capture, so the body is
+        // only resolved, and parsed if it is lazy, once the function is called.
+        if (frame == null) {
+            environment.define(stmt.name.lexeme,
+                new ZenFunction(stmt, null, environment, ZenFunction.NO_CELLS));
+            return null;
+        }
+
+        // declared before the closure captures its cells, so that it can call itself.
+        Resolver.Layout nested = layout.layout(stmt);
+        Resolver.Local local = layout.local(stmt);
+        declare(local, stmt, null);
+        store(local, new ZenFunction(stmt, nested, environment, capture(nested)));
+        return null;
+    }
+
+    // the cells of the variables a closure created in the current frame captures.
+    private ZenFunction.Cell[] capture(Resolver.Layout nested) {
+        if (nested.captures.length == 0)
+            return ZenFunction.NO_CELLS;
+
+        ZenFunction.Cell[] captured = new ZenFunction.Cell[nested.captures.length];
+        for (int i = 0; i < captured.length; i++) {
+            Resolver.Binding source = nested.captures[i];
+            captured[i] = source.local == null
+                ? cells[source.capture]
+                : (ZenFunction.Cell)frame[source.local.index];
+        }
+
+        return captured;
+    }
+
+    // a function or class in the slot its declaration already took.
+    private void store(Resolver.Local local, Object value) {
+        if (local.captured) {
+            ((ZenFunction.Cell)frame[local.index]).value = value;
+        } else {
+            frame[local.index] = value;
+        }
+    }
+
+    /*
+     * the methods get an environment of their own with super in it, if the
+     * class has a superclass. in functions, the class is declared before its
+     * methods are created, so that they can capture it.
+     */
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        tick(stmt.name);
+
+        Object superclass = null;
+        if (stmt.superclass != null) {
+            superclass = evaluate(stmt.superclass);
+            if (!(superclass instanceof ZenClass))
+                throw new RuntimeError(stmt.superclass.name, "Superclass must be a class.");
+        }
+
+        Resolver.Local local = frame == null ? null : layout.local(stmt);
+        if (local != null)
+            declare(local, stmt, null);
+
+        Environment closure = environment;
+        if (superclass != null) {
+            closure = new Environment(environment);
+            closure.define("super", superclass);
+        }
+
+        Map<String, ZenFunction> methods = new HashMap<>();
+        for (Stmt.Function method : stmt.methods) {
+            Resolver.Layout nested = frame == null
+                ? resolver.layout(stmt, method) : layout.layout(method);
+            methods.put(method.name.lexeme, new ZenFunction(method, nested, closure,
+                capture(nested), method.name.lexeme.equals("init"), null));
+        }
+
+        ZenClass klass = new ZenClass(stmt.name.lexeme, (ZenClass)superclass, methods);
+        if (profile != null)
+            klass.grew(profile.fields(stmt));
+        if (recording != null)
+            recording.defined(stmt, klass);
+        if (local == null) {
+            environment.define(stmt.name.lexeme, klass);
+        } else {
+            store(local, klass);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        tick(stmt.keyword);
+
+        Path path = Modules.resolve(directory, stmt);
+        if (!imported.add(path))
+            return null;
+
+        // a module's variables are globals, like those of the script.
+        List<Stmt> statements = Modules.statements(path, stmt);
+        Environment previous = environment;
+        Path enclosing = directory;
+        try {
+            environment = globals;
+            directory = path.getParent();
+            for (Stmt statement : statements) {
+                execute(statement);
+            }
+        } finally {
+            environment = previous;
+            directory = enclosing;
+        }
+        return null;
+    }
+
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
         Object value = evaluate(stmt.expression);
@@ -149,8 +774,43 @@ class Interpreter implements Expr.Visitor<Object>,
         return null;
     }
 
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        tick(stmt.keyword);
+
+        Expr value = stmt.value;
+        while (value instanceof Expr.Grouping) {
+            value = ((Expr.Grouping)value).expression;
+        }
+
+        if (value instanceof Expr.Call) {
+            returnValue = call((Expr.Call)value, true);
+        } else {
+            returnValue = value == null ? null : evaluate(value);
+        }
+
+        returning = true;
+        return null;
+    }
+
     @Override
     public Void visitVarStmt(Stmt.Var stmt) {
+        if (frame != null) {
+            tick(stmt.name);
+            Object value = stmt.initializer == null ? null : evaluate(stmt.initializer);
+            declare(layout.local(stmt), stmt, value);
+            return null;
+        }
+
+        TypeInference.Slot slot = slots.get(stmt);
+        if (slot != null && slot.local.numeric) {
+            tick(stmt.name);
+            environment.numbers[slot.local.index] = evaluateNumber(stmt.initializer);
+            return null;
+        }
+
+        tick(stmt.name);
+
         Object value = null;
         if (stmt.initializer != null) {
             value = evaluate(stmt.initializer);
@@ -160,15 +820,154 @@ class Interpreter implements Expr.Visitor<Object>,
         return null;
     }
 
+    /*
+     * a block body gets one environment for the whole loop, emptied before
+     * every iteration instead of a new one each time. only a function declared
+     * in the body could hold on to the environment of an iteration once it is
+     * over, so bodies with function or class declarations get a new one each time.
+     * in functions, bodies have no environment at all.
+     */
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        LoopProfile.Counts counts = loopProfile == null ? null : loopProfile.counts(stmt);
+        if (counts != null) counts.entries++;
+
+        Stmt.Block block = null;
+        if (frame == null && stmt.body instanceof Stmt.Block &&
+            !declaresFunction.computeIfAbsent(stmt.body, Interpreter::declaresFunction))
+            block = (Stmt.Block)stmt.body;
+
+        Environment body = null;
+        if (block != null) {
+            Integer numbers = frameSizes.get(block);
+            body = new Environment(environment, numbers == null ? 0 : numbers,
+                profile == null ? 0 : profile.variables(block));
+        }
+
+        while (condition(stmt.condition)) {
+            // an empty body still costs a step, so a budget ends any loop.
+            tick(stmt.keyword);
+            if (counts != null) counts.iterations++;
+
+            if (block != null) {
+                body.clear();
+                executeBlock(block.statements, body);
+            } else {
+                execute(stmt.body);
+                if (returning) break;
+            }
+
+            if (stmt.increment != null)
+                evaluate(stmt.increment);
+        }
+
+        if (recording != null && body != null)
+            recording.environment(block, body.values().size());
+        return null;
+    }
+
+    // a function or class declaration anywhere in the statement, outside of other functions.
+    private static boolean declaresFunction(Stmt stmt) {
+        if (stmt instanceof Stmt.Function || stmt instanceof Stmt.Class)
+            return true;
+        if (stmt instanceof Stmt.While)
+            return declaresFunction(((Stmt.While)stmt).body);
+        if (stmt instanceof Stmt.Block) {
+            for (Stmt statement : ((Stmt.Block)stmt).statements) {
+                if (declaresFunction(statement)) return true;
+            }
+        }
+
+        return false;
+    }
+
+    // isTruthy(evaluate(expr)), but a comparison compares its operands without boxing the result.
+    private boolean condition(Expr expr) {
+        if (!(expr instanceof Expr.Binary))
+            return isTruthy(evaluate(expr));
+
+        Expr.Binary binary = (Expr.Binary)expr;
+        TokenType type = binary.operator.type;
+        if (type != TokenType.LESS && type != TokenType.LESS_EQUAL &&
+            type != TokenType.GREATER && type != TokenType.GREATER_EQUAL)
+            return isTruthy(evaluate(expr));
+
+        tick(binary.operator);
+        double left;
+        double right;
+        if (numericOperands.contains(binary)) {
+            left = evaluateNumber(binary.left);
+            right = evaluateNumber(binary.right);
+            if (recording != null)
+                recording.operands(binary, Profile.NUMBERS);
+        } else {
+            Object a = evaluate(binary.left);
+            Object b = evaluate(binary.right);
+            if (recording != null)
+                recording.operands(binary, a, b);
+            checkNumberOperands(binary.operator, a, b);
+            left = (double)a;
+            right = (double)b;
+        }
+
+        switch (type) {
+            case LESS: return left < right;
+            case LESS_EQUAL: return left <= right;
+            case GREATER: return left > right;
+            default: return left >= right;
+        }
+    }
+
     @Override
     public Object visitAssignExpr(Expr.Assign expr) {
+        if (frame != null) {
+            tick(expr.name);
+            Object value = evaluate(expr.value);
+            assign(expr, value);
+            return value;
+        }
+
+        if (isNumeric(expr))
+            return evaluateNumber(expr);
+
+        tick(expr.name);
+
         Object value = evaluate(expr.value);
         environment.assign(expr.name, value);
 
         return value;
     }
 
-    private boolean isTruthy(Object object) {
+    private void tick(Token token) {
+        if (++steps >= nextCheck)
+            checkBudget(token);
+    }
+
+    // slow path of tick(), kept out of line so that tick() stays small enough to inline.
+    private void checkBudget(Token token) {
+        if (steps > budget.maxSteps) {
+            throw new RuntimeError(token,
+                "Execution exceeded the limit of " + budget.maxSteps + " steps.");
+        }
+        if (deadline != 0 && System.nanoTime() - deadline > 0) {
+            throw new RuntimeError(token,
+                "Execution exceeded the time limit of " + budget.timeoutMillis + " ms.");
+        }
+        if (depth > budget.maxDepth) {
+            throw new RuntimeError(token,
+                "Blocks and calls nested deeper than the limit of " + budget.maxDepth + ".");
+        }
+
+        nextCheck = Math.min(steps + CHECK_INTERVAL, budget.maxSteps);
+    }
+
+    private void checkStringLength(Token operator, String left, String right) {
+        if ((long)left.length() + right.length() <= budget.maxStringLength) return;
+        throw new RuntimeError(operator,
+            "String exceeds the limit of " + budget.maxStringLength + " characters.");
+    }
+
+    static boolean isTruthy(Object object) {
         if (object == null) return false;
         if (object instanceof Boolean) return (boolean)object;
         // boolean: primitive data type
@@ -177,14 +976,23 @@ class Interpreter implements Expr.Visitor<Object>,
         return true;
     }
 
-    private boolean isEqual(Object A, Object B) {
-        if (A == null && B == null) return true;
+    // interned literals and the two Booleans are equal by reference,
+    // only strings built at runtime fall through to a content comparison.
+    static boolean isEqual(Object A, Object B) {
+        if (A == B) return true;
         if (A == null) return false;
 
         return A.equals(B);
     }
 
-    private String stringify(Object object) {
+    // an empty side gives back the other string, keeping it interned.
+    static String concatenate(String left, String right) {
+        if (left.isEmpty()) return right;
+        if (right.isEmpty()) return left;
+        return left + right;
+    }
+
+    static String stringify(Object object) {
         if (object == null) return "none";
 
         /* since every number type is represented with double-precision
@@ -203,12 +1011,12 @@ class Interpreter implements Expr.Visitor<Object>,
         return object.toString();
     }   
 
-    private void checkNumberOperand(Token operator, Object operand) {
+    static void checkNumberOperand(Token operator, Object operand) {
         if (operand instanceof Double) return;
         throw new RuntimeError(operator, "Operand must be a number.");
     }
 
-    private void checkNumberOperands(Token operator, Object left, Object right) {
+    static void checkNumberOperands(Token operator, Object left, Object right) {
         if (left instanceof Double && right instanceof Double) return;
         throw new RuntimeError(operator, "Operands must be numbers.");
     }
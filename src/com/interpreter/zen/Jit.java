@@ -0,0 +1,499 @@
+package com.interpreter.zen;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.interpreter.zen.TypeInference.Kind;
+import com.interpreter.zen.TypeInference.Local;
+
+import static com.interpreter.zen.ClassFile.*;
+
+/*
+ * compilation tier, turns a parsed program into JVM bytecode
+ * and loads it as hidden classes, so that HotSpot can compile it like Java.
+ *
+ * - variables declared inside blocks become JVM locals,
+ *   globals stay in the Environment, since they outlive a single run.
+ * - a local that TypeInference proves numeric lives in a primitive double.
+ * - operand checks call into JitRuntime and raise the Interpreter's errors.
+ *
+ * programs using anything the compiler does not know about are not compiled,
+ * compile() then returns null and the caller falls back to the Interpreter.
+ */
+class Jit implements Expr.Visitor<Kind>,
+                     Stmt.Visitor<Void> {
+    // sentinel, unwinds the compiler when it meets an unsupported construct.
+    private static class Unsupported extends RuntimeException {}
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final String RUNTIME = "com/interpreter/zen/JitRuntime";
+    private static final String OBJECT = "Ljava/lang/Object;";
+    private static final String RUN = "(L" + RUNTIME + ";)V";
+
+    // top-level statements are spread over classes of about this much code,
+    // well below the 64k limit on a single method.
+    private static final int CLASS_CODE_SIZE = 1 << 15;
+
+    // string constants longer than this may not fit a constant pool entry.
+    private static final int MAX_STRING_CONSTANT = 0xffff / 3;
+
+    // slot 0 of every compiled method holds the JitRuntime.
+    private static final int RUNTIME_SLOT = 0;
+
+    private final TypeInference types = new TypeInference();
+    private final Map<Local, Integer> slots = new IdentityHashMap<>();
+    private final List<Token> tokens = new ArrayList<>();
+    private final Map<Token, Integer> tokenIndexes = new IdentityHashMap<>();
+    private final List<MethodHandle> classes = new ArrayList<>();
+    private ClassFile file;
+
+    private Jit() {}
+
+    static Runnable compile(List<Stmt> statements, Environment globals) {
+        Jit jit = new Jit();
+        if (!jit.types.analyze(statements))
+            return null;
+
+        try {
+            for (Stmt statement : statements) {
+                if (jit.file == null)
+                    jit.file = new ClassFile("com/interpreter/zen/JitCode", 1);
+
+                jit.execute(statement);
+                if (!jit.file.fits())
+                    return null;
+                if (jit.file.codeSize() >= CLASS_CODE_SIZE)
+                    jit.finish();
+            }
+            if (jit.file != null)
+                jit.finish();
+        } catch (Unsupported error) {
+            return null;
+        }
+
+        JitRuntime runtime = new JitRuntime(globals, jit.tokens);
+        List<MethodHandle> classes = jit.classes;
+        return () -> {
+            for (MethodHandle run : classes) {
+                invoke(run, runtime);
+            }
+        };
+    }
+
+    private static void invoke(MethodHandle run, JitRuntime runtime) {
+        try {
+            run.invokeExact(runtime);
+        } catch (RuntimeException | Error error) {
+            throw error;
+        } catch (Throwable error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    private void finish() {
+        file.op(RETURN, 0);
+        byte[] bytes = file.toBytes("run", RUN);
+        file = null;
+
+        try {
+            MethodHandles.Lookup lookup = LOOKUP.defineHiddenClass(bytes, true);
+            classes.add(lookup.findStatic(lookup.lookupClass(), "run",
+                MethodType.methodType(void.class, JitRuntime.class)));
+        } catch (ReflectiveOperationException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    // ---- code generation.
+
+    private Kind compile(Expr expr) {
+        return expr.accept(this);
+    }
+
+    private void execute(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    @Override
+    public Kind visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value instanceof Double) {
+            file.pushDouble((double)expr.value);
+            return Kind.NUMBER;
+        }
+        if (expr.value instanceof Boolean) {
+            file.pushInt((boolean)expr.value ? 1 : 0);
+            return Kind.BOOLEAN;
+        }
+        if (expr.value instanceof String) {
+            String value = (String)expr.value;
+            if (value.length() > MAX_STRING_CONSTANT)
+                throw new Unsupported();
+            file.pushString(value);
+            return Kind.OBJECT;
+        }
+
+        file.op(ACONST_NULL, 1);
+        return Kind.OBJECT;
+    }
+
+    // functions only run in the tree engine, whose calls use the frames of Resolver.
+    @Override
+    public Kind visitCallExpr(Expr.Call expr) {
+        throw new Unsupported();
+    }
+
+    // so do classes, whose instances are laid out by their shapes.
+    @Override
+    public Kind visitGetExpr(Expr.Get expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Kind visitSetExpr(Expr.Set expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Kind visitSuperExpr(Expr.Super expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Kind visitThisExpr(Expr.This expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Kind visitGroupingExpr(Expr.Grouping expr) {
+        return compile(expr.expression);
+    }
+
+    @Override
+    public Kind visitUnaryExpr(Expr.Unary expr) {
+        Kind right = compile(expr.right);
+
+        if (expr.operator.type == TokenType.MINUS) {
+            if (right == Kind.NUMBER) {
+                file.op(DNEG, 0);
+            } else {
+                box(right);
+                runtimeBelowTop();
+                file.pushInt(token(expr.operator));
+                file.invoke(INVOKEVIRTUAL, RUNTIME, "negate", "(" + OBJECT + "I)D");
+            }
+            return Kind.NUMBER;
+        }
+
+        // NOT, a number is always truthy.
+        switch (right) {
+            case NUMBER:
+                file.op(POP2, -2);
+                file.pushInt(0);
+                break;
+            case BOOLEAN:
+                negateBoolean();
+                break;
+            default:
+                file.invoke(INVOKESTATIC, RUNTIME, "not", "(" + OBJECT + ")Z");
+                break;
+        }
+        return Kind.BOOLEAN;
+    }
+
+    @Override
+    public Kind visitVariableExpr(Expr.Variable expr) {
+        Local local = types.local(expr);
+        if (local == null) {
+            file.local(ALOAD, RUNTIME_SLOT, 1);
+            file.pushInt(token(expr.name));
+            file.invoke(INVOKEVIRTUAL, RUNTIME, "getGlobal", "(I)" + OBJECT);
+            return Kind.OBJECT;
+        }
+
+        if (local.numeric) {
+            file.local(DLOAD, slots.get(local), 2);
+            return Kind.NUMBER;
+        }
+        file.local(ALOAD, slots.get(local), 1);
+        return Kind.OBJECT;
+    }
+
+    @Override
+    public Kind visitAssignExpr(Expr.Assign expr) {
+        Local local = types.local(expr);
+        if (local == null) {
+            file.local(ALOAD, RUNTIME_SLOT, 1);
+            box(compile(expr.value));
+            file.pushInt(token(expr.name));
+            file.invoke(INVOKEVIRTUAL, RUNTIME, "assignGlobal", "(" + OBJECT + "I)" + OBJECT);
+            return Kind.OBJECT;
+        }
+
+        if (local.numeric) {
+            compile(expr.value);
+            file.op(DUP2, 2);
+            file.local(DSTORE, slots.get(local), -2);
+            return Kind.NUMBER;
+        }
+        box(compile(expr.value));
+        file.op(DUP, 1);
+        file.local(ASTORE, slots.get(local), -1);
+        return Kind.OBJECT;
+    }
+
+    @Override
+    public Kind visitBinaryExpr(Expr.Binary expr) {
+        switch (expr.operator.type) {
+            case MINUS:
+                numberOperands(expr);
+                file.op(DSUB, -2);
+                return Kind.NUMBER;
+            case SLASH:
+                numberOperands(expr);
+                file.op(DDIV, -2);
+                return Kind.NUMBER;
+            case STAR:
+                numberOperands(expr);
+                file.op(DMUL, -2);
+                return Kind.NUMBER;
+
+            case PLUS:
+                if (types.kindOf(expr) == Kind.NUMBER) {
+                    compile(expr.left);
+                    compile(expr.right);
+                    file.op(DADD, -2);
+                    return Kind.NUMBER;
+                }
+                file.local(ALOAD, RUNTIME_SLOT, 1);
+                box(compile(expr.left));
+                box(compile(expr.right));
+                file.pushInt(token(expr.operator));
+                file.invoke(INVOKEVIRTUAL, RUNTIME, "add",
+                    "(" + OBJECT + OBJECT + "I)" + OBJECT);
+                return Kind.OBJECT;
+
+            case GREATER:
+                return compare(expr, "greater");
+            case GREATER_EQUAL:
+                return compare(expr, "greaterEqual");
+            case LESS:
+                return compare(expr, "less");
+            case LESS_EQUAL:
+                return compare(expr, "lessEqual");
+
+            case EQUAL_EQUAL:
+                equality(expr);
+                return Kind.BOOLEAN;
+            case NOT_EQUAL:
+                equality(expr);
+                negateBoolean();
+                return Kind.BOOLEAN;
+
+            default:
+                throw new Unsupported();
+        }
+    }
+
+    private Kind compare(Expr.Binary expr, String helper) {
+        numberOperands(expr);
+        file.invoke(INVOKESTATIC, RUNTIME, helper, "(DD)Z");
+        return Kind.BOOLEAN;
+    }
+
+    private void equality(Expr.Binary expr) {
+        if (types.kindOf(expr.left) == Kind.NUMBER && types.kindOf(expr.right) == Kind.NUMBER) {
+            compile(expr.left);
+            compile(expr.right);
+            file.invoke(INVOKESTATIC, RUNTIME, "equal", "(DD)Z");
+            return;
+        }
+
+        box(compile(expr.left));
+        box(compile(expr.right));
+        file.invoke(INVOKESTATIC, RUNTIME, "equal", "(" + OBJECT + OBJECT + ")Z");
+    }
+
+    /*
+     * leaves both operands as doubles on the stack.
+     * like the Interpreter, both sides are evaluated before either is checked,
+     * so an unknown left operand waits in a local until the right one is done.
+     */
+    private void numberOperands(Expr.Binary expr) {
+        int operator = token(expr.operator);
+
+        if (types.kindOf(expr.left) == Kind.NUMBER) {
+            compile(expr.left);
+            toNumber(compile(expr.right), operator);
+            return;
+        }
+
+        box(compile(expr.left));
+        int left = file.newLocal(1);
+        file.local(ASTORE, left, -1);
+
+        toNumber(compile(expr.right), operator);
+        int right = file.newLocal(2);
+        file.local(DSTORE, right, -2);
+
+        file.local(ALOAD, RUNTIME_SLOT, 1);
+        file.local(ALOAD, left, 1);
+        file.pushInt(operator);
+        file.invoke(INVOKEVIRTUAL, RUNTIME, "operand", "(" + OBJECT + "I)D");
+        file.local(DLOAD, right, 2);
+    }
+
+    private void toNumber(Kind kind, int operator) {
+        if (kind == Kind.NUMBER) return;
+
+        box(kind);
+        runtimeBelowTop();
+        file.pushInt(operator);
+        file.invoke(INVOKEVIRTUAL, RUNTIME, "operand", "(" + OBJECT + "I)D");
+    }
+
+    private void box(Kind kind) {
+        if (kind == Kind.NUMBER) {
+            file.invoke(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;");
+        } else if (kind == Kind.BOOLEAN) {
+            file.invoke(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;");
+        }
+    }
+
+    // slides the JitRuntime under the single-slot value on top of the stack.
+    private void runtimeBelowTop() {
+        file.local(ALOAD, RUNTIME_SLOT, 1);
+        file.op(SWAP, 0);
+    }
+
+    private void negateBoolean() {
+        file.pushInt(1);
+        file.op(IXOR, -1);
+    }
+
+    private int token(Token token) {
+        Integer index = tokenIndexes.get(token);
+        if (index == null) {
+            index = tokens.size();
+            tokens.add(token);
+            tokenIndexes.put(token, index);
+        }
+
+        return index;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        for (Stmt statement : stmt.statements) {
+            execute(statement);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        Kind kind = compile(stmt.expression);
+        file.op(kind == Kind.NUMBER ? POP2 : POP, kind == Kind.NUMBER ? -2 : -1);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        throw new Unsupported();
+    }
+
+    // modules are loaded and run by the Interpreter.
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        box(compile(stmt.expression));
+        file.invoke(INVOKESTATIC, RUNTIME, "print", "(" + OBJECT + ")V");
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        Local local = types.local(stmt);
+        if (local == null) {
+            file.local(ALOAD, RUNTIME_SLOT, 1);
+            if (stmt.initializer != null) {
+                box(compile(stmt.initializer));
+            } else {
+                file.op(ACONST_NULL, 1);
+            }
+            file.pushInt(token(stmt.name));
+            file.invoke(INVOKEVIRTUAL, RUNTIME, "defineGlobal", "(" + OBJECT + "I)V");
+            return null;
+        }
+
+        if (local.numeric) {
+            compile(stmt.initializer);
+            slots.put(local, file.newLocal(2));
+            file.local(DSTORE, slots.get(local), -2);
+            return null;
+        }
+
+        if (stmt.initializer != null) {
+            box(compile(stmt.initializer));
+        } else {
+            file.op(ACONST_NULL, 1);
+        }
+        slots.put(local, file.newLocal(1));
+        file.local(ASTORE, slots.get(local), -1);
+        return null;
+    }
+
+    /*
+     * the condition is tested at the top and jumps past the loop when false,
+     * the body ends in a jump back up. block variables of the body are JVM
+     * locals, stored to again by their declarations every iteration.
+     */
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        int start = file.position();
+        int exit;
+        switch (compile(stmt.condition)) {
+            case NUMBER:
+                // a number is always truthy.
+                file.op(POP2, -2);
+                exit = -1;
+                break;
+            case BOOLEAN:
+                exit = file.jumpForward(IFEQ);
+                break;
+            default:
+                file.invoke(INVOKESTATIC, RUNTIME, "not", "(" + OBJECT + ")Z");
+                exit = file.jumpForward(IFNE);
+                break;
+        }
+
+        execute(stmt.body);
+        if (stmt.increment != null) {
+            Kind kind = compile(stmt.increment);
+            file.op(kind == Kind.NUMBER ? POP2 : POP, kind == Kind.NUMBER ? -2 : -1);
+        }
+
+        file.jumpTo(GOTO, start);
+        if (exit >= 0)
+            file.land(exit);
+        return null;
+    }
+}
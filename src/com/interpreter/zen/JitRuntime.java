@@ -0,0 +1,90 @@
+package com.interpreter.zen;
+
+import java.util.List;
+
+/*
+ * everything the code emitted by Jit calls back into.
+ *
+ * compiled code refers to tokens by their index in the tokens list,
+ * so that runtime errors carry the same token, and line, as in the Interpreter.
+ * the static helpers are small enough for HotSpot to inline at the call site.
+ */
+class JitRuntime {
+    private final Environment globals;
+    private final Token[] tokens;
+
+    JitRuntime(Environment globals, List<Token> tokens) {
+        this.globals = globals;
+        this.tokens = tokens.toArray(new Token[0]);
+    }
+
+    Object getGlobal(int name) {
+        return globals.get(tokens[name]);
+    }
+
+    Object assignGlobal(Object value, int name) {
+        globals.assign(tokens[name], value);
+        return value;
+    }
+
+    void defineGlobal(Object value, int name) {
+        globals.define(tokens[name].lexeme, value);
+    }
+
+    // unboxes one operand of a binary operator.
+    double operand(Object value, int operator) {
+        if (value instanceof Double) return (double)value;
+        throw new RuntimeError(tokens[operator], "Operands must be numbers.");
+    }
+
+    double negate(Object value, int operator) {
+        if (value instanceof Double) return -(double)value;
+        throw new RuntimeError(tokens[operator], "Operand must be a number.");
+    }
+
+    // overloaded PLUS, once either side is not known to be a number.
+    Object add(Object left, Object right, int operator) {
+        if (left instanceof Double && right instanceof Double) {
+            return (double)left + (double)right;
+        }
+        if (left instanceof String && right instanceof String) {
+            return Interpreter.concatenate((String)left, (String)right);
+        }
+
+        throw new RuntimeError(tokens[operator],
+            "Operands must either be two numbers or two strings.");
+    }
+
+    static boolean greater(double left, double right) {
+        return left > right;
+    }
+
+    static boolean greaterEqual(double left, double right) {
+        return left >= right;
+    }
+
+    static boolean less(double left, double right) {
+        return left < right;
+    }
+
+    static boolean lessEqual(double left, double right) {
+        return left <= right;
+    }
+
+    // same as Double.equals(), which is what the Interpreter ends up calling.
+    static boolean equal(double left, double right) {
+        return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+    }
+
+    static boolean equal(Object left, Object right) {
+        return Interpreter.isEqual(left, right);
+    }
+
+    static boolean not(Object value) {
+        return !Interpreter.isTruthy(value);
+    }
+
+    static void print(Object value) {
+        System.out.println(Interpreter.stringify(value));
+    }
+}
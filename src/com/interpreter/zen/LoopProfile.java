@@ -0,0 +1,47 @@
+package com.interpreter.zen;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * how often every loop was entered and how many iterations it ran, for --profile-loops.
+ *
+ * the Interpreter looks up a loop's counts once per entry and then only
+ * increments a field per iteration, so profiling costs little in hot loops.
+ */
+class LoopProfile {
+    static class Counts {
+        final Token keyword;
+        long entries = 0;
+        long iterations = 0;
+
+        Counts(Token keyword) {
+            this.keyword = keyword;
+        }
+    }
+
+    private final Map<Stmt.While, Counts> loops = new HashMap<>();
+
+    Counts counts(Stmt.While loop) {
+        return loops.computeIfAbsent(loop, key -> new Counts(key.keyword));
+    }
+
+    // the loops in source order.
+    List<Counts> loops() {
+        List<Counts> counts = new ArrayList<>(loops.values());
+        counts.sort((a, b) -> a.keyword.line != b.keyword.line
+            ? Integer.compare(a.keyword.line, b.keyword.line)
+            : Integer.compare(a.keyword.offset, b.keyword.offset));
+        return counts;
+    }
+
+    void report(PrintStream out) {
+        for (Counts counts : loops()) {
+            out.printf("[line %d] %s loop: %d entries, %d iterations%n",
+                counts.keyword.line, counts.keyword.lexeme, counts.entries, counts.iterations);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.interpreter.zen;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static com.interpreter.zen.TokenType.EOF;
+
+/*
+ * loads the modules named by import statements.
+ *
+ * imports are only allowed at the top level, so every module a script can
+ * reach is known before it runs. preload() reads, scans and parses all of
+ * them on the common fork-join pool, each module starting the loads of its
+ * own imports as soon as it is parsed. errors are held back while loading,
+ * then reported on the calling thread in import order.
+ *
+ * parsed modules are cached by path for the life of the process, so a REPL
+ * session or a --watch run only parses a module again once its file has a
+ * new modification time. the Interpreter runs every module once, in the
+ * global scope, and resolves a module's imports against its own directory.
+ */
+class Modules {
+    static class Module {
+        final FileTime modified;
+        final String source;
+
+        // null if the module has a syntax error.
+        final List<Stmt> statements;
+
+        Module(FileTime modified, String source, List<Stmt> statements) {
+            this.modified = modified;
+            this.source = source;
+            this.statements = statements;
+        }
+    }
+
+    // only modules without errors are cached, the others are read again next time.
+    private static final Map<Path, Module> cache = new ConcurrentHashMap<>();
+
+    private Modules() {}
+
+    static Path resolve(Path directory, Stmt.Import stmt) {
+        return directory.resolve((String)stmt.path.literal).toAbsolutePath().normalize();
+    }
+
+    /*
+     * loads every module the statements import, directly or not.
+     * returns false after reporting the errors of the modules that
+     * cannot be read or have a syntax error.
+     */
+    static boolean preload(List<Stmt> statements, Path directory) {
+        List<Path> roots = imports(statements, directory);
+        if (roots.isEmpty())
+            return true;
+
+        Map<Path, Module> loaded = new ConcurrentHashMap<>();
+        Set<Path> started = ConcurrentHashMap.newKeySet();
+        List<Load> loads = new ArrayList<>();
+        for (Path path : roots) {
+            if (started.add(path)) loads.add(new Load(path, loaded, started));
+        }
+        ForkJoinPool.commonPool().invoke(new LoadAll(loads));
+
+        report(statements, directory, loaded, new HashSet<>());
+        return !Zen.hadError;
+    }
+
+    // the statements of a module, for an import that was not preloaded.
+    static List<Stmt> statements(Path path, Stmt.Import stmt) {
+        Module module = load(path);
+        if (module == null || module.statements == null) {
+            throw new RuntimeError(stmt.keyword,
+                "Cannot import '" + stmt.path.literal + "'.");
+        }
+
+        return module.statements;
+    }
+
+    // the cached module if its file did not change since, null if it cannot be read.
+    private static Module load(Path path) {
+        try {
+            FileTime modified = Files.getLastModifiedTime(path);
+            Module cached = cache.get(path);
+            if (cached != null && cached.modified.equals(modified))
+                return cached;
+
+            String source = new String(Files.readAllBytes(path), Charset.defaultCharset());
+            Module module = new Module(modified, source, parse(source));
+            if (module.statements != null)
+                cache.put(path, module);
+
+            return module;
+        } catch (IOException error) {
+            return null;
+        }
+    }
+
+    // scanned and parsed without reporting anything, null for an error.
+    private static List<Stmt> parse(String source) {
+        Scanner scanner = Scanner.piece(source, 1);
+        if (!scanner.errors().isEmpty())
+            return null;
+
+        List<Token> tokens = new ArrayList<>(scanner.tokens());
+        tokens.add(new Token(EOF, "", null, scanner.line(), source.length()));
+        return Parser.parseRegion(tokens, new ArrayList<>(), Zen.lazyParse);
+    }
+
+    private static List<Path> imports(List<Stmt> statements, Path directory) {
+        List<Path> paths = new ArrayList<>();
+        for (Stmt statement : statements) {
+            if (statement instanceof Stmt.Import)
+                paths.add(resolve(directory, (Stmt.Import)statement));
+        }
+
+        return paths;
+    }
+
+    private static class Load extends RecursiveAction {
+        private final Path path;
+        private final Map<Path, Module> loaded;
+        private final Set<Path> started;
+
+        Load(Path path, Map<Path, Module> loaded, Set<Path> started) {
+            this.path = path;
+            this.loaded = loaded;
+            this.started = started;
+        }
+
+        @Override
+        protected void compute() {
+            Module module = load(path);
+            if (module == null || module.statements == null) {
+                if (module != null) loaded.put(path, module);
+                return;
+            }
+            loaded.put(path, module);
+
+            List<Load> loads = new ArrayList<>();
+            for (Path imported : imports(module.statements, path.getParent())) {
+                if (started.add(imported)) loads.add(new Load(imported, loaded, started));
+            }
+            invokeAll(loads);
+        }
+    }
+
+    private static class LoadAll extends RecursiveAction {
+        private final List<Load> loads;
+
+        LoadAll(List<Load> loads) {
+            this.loads = loads;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(loads);
+        }
+    }
+
+    // walks the imports depth first, the order in which the modules would run.
+    private static void report(List<Stmt> statements, Path directory,
+                               Map<Path, Module> loaded, Set<Path> visited) {
+        for (Stmt statement : statements) {
+            if (!(statement instanceof Stmt.Import)) continue;
+
+            Stmt.Import stmt = (Stmt.Import)statement;
+            Path path = resolve(directory, stmt);
+            if (!visited.add(path)) continue;
+
+            Module module = loaded.get(path);
+            if (module == null) {
+                Zen.error(stmt.path, "Cannot read module '" + stmt.path.literal + "'.");
+            } else if (module.statements == null) {
+                // scanned and parsed again, this time reporting the errors.
+                Zen.inModule(path, () -> new Parser(new Scanner(module.source).scanTokens()).parse());
+            } else {
+                Zen.inModule(path, () -> report(module.statements, path.getParent(), loaded, visited));
+            }
+        }
+    }
+}
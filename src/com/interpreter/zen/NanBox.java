@@ -0,0 +1,180 @@
+package com.interpreter.zen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * NaN-boxed encoding of runtime values into a single long.
+ *
+ * a number is its own IEEE 754 bits. every other value hides in the
+ * quiet NaN space that no arithmetic result uses once NaNs are canonicalised:
+ *
+ *      none, false, true   QNAN | 1, 2, 3
+ *      constant string     SIGN | QNAN | index into the constant table
+ *      runtime string      SIGN | QNAN | RUNTIME_BIT | index into the runtime table
+ *      object              SIGN | QNAN | OBJECT_BIT | index into the object table
+ *
+ * the string literals of the program are interned in the constant table,
+ * which lives as long as the NanBox, one per compiled program.
+ * strings made while it runs, by concatenation or read from globals, are
+ * not: each gets a new index in the runtime table, and collect() drops the
+ * ones no variable holds anymore, so a loop building strings runs in the
+ * memory its variables need. two strings are equal when their bits are or,
+ * failing that, their contents, numbers when their bits are, the same rule
+ * Double.equals() applies.
+ * functions, classes and instances only pass through from globals, they
+ * are interned by identity, which is also how they compare.
+ */
+class NanBox {
+    private static final long SIGN = 0x8000000000000000L;
+    private static final long QNAN = 0x7ffc000000000000L;
+    private static final long CANONICAL_NAN = 0x7ff8000000000000L;
+    private static final long STRING = SIGN | QNAN;
+    private static final long OBJECT = STRING | 0x0002000000000000L;
+    private static final long RUNTIME = 0x0001000000000000L;
+
+    // the runtime table is collected once it has this many strings, or
+    // twice as many as the last collection kept, whichever is more.
+    private static final int COLLECT_AT = 1024;
+
+    static final long NONE = QNAN | 1;
+    static final long FALSE = QNAN | 2;
+    static final long TRUE = QNAN | 3;
+
+    private final List<String> constants = new ArrayList<>();
+    private final Map<String, Long> interned = new HashMap<>();
+    private String[] strings = new String[COLLECT_AT];
+    private int count = 0;
+    private int limit = COLLECT_AT;
+    private final List<Object> objects = new ArrayList<>();
+    private final Map<Object, Long> identities = new IdentityHashMap<>();
+
+    static boolean isNumber(long value) {
+        return (value & QNAN) != QNAN;
+    }
+
+    static long number(double value) {
+        // every NaN shares one encoding, like Double.doubleToLongBits().
+        return value != value ? CANONICAL_NAN : Double.doubleToRawLongBits(value);
+    }
+
+    static double asNumber(long value) {
+        return Double.longBitsToDouble(value);
+    }
+
+    static long bool(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    static boolean isTruthy(long value) {
+        return value != NONE && value != FALSE;
+    }
+
+    static boolean isString(long value) {
+        return (value & OBJECT) == STRING;
+    }
+
+    private static boolean isObject(long value) {
+        return (value & OBJECT) == OBJECT;
+    }
+
+    private static boolean isRuntime(long value) {
+        return (value & (OBJECT | RUNTIME)) == (STRING | RUNTIME);
+    }
+
+    // a string of the program's source, interned.
+    long constant(String value) {
+        Long encoded = interned.get(value);
+        if (encoded == null) {
+            encoded = STRING | constants.size();
+            constants.add(value);
+            interned.put(value, encoded);
+        }
+
+        return encoded;
+    }
+
+    // a string made at run time, held until a collect() finds it unused.
+    long string(String value) {
+        if (count == strings.length)
+            strings = Arrays.copyOf(strings, 2 * count);
+        strings[count] = value;
+        return STRING | RUNTIME | count++;
+    }
+
+    String asString(long value) {
+        int index = (int)(value & 0xffffffffL);
+        return (value & RUNTIME) != 0 ? strings[index] : constants.get(index);
+    }
+
+    boolean equal(long a, long b) {
+        return a == b || isString(a) && isString(b) && asString(a).equals(asString(b));
+    }
+
+    // whether collect() is due.
+    boolean full() {
+        return count >= limit;
+    }
+
+    /*
+     * keeps the runtime strings held by the frame and the frames enclosing it,
+     * renumbered from 0 in their slots, and drops the others. only called
+     * between statements, where no value is held outside of frames: globals
+     * hold decoded strings, and the engine does not run functions, so every
+     * live frame is in the chain.
+     */
+    void collect(NanBoxCompiler.Frame frame) {
+        int[] moved = new int[count];
+        Arrays.fill(moved, -1);
+        String[] kept = new String[strings.length];
+        int size = 0;
+
+        for (; frame != null; frame = frame.enclosing) {
+            long[] values = frame.values;
+            for (int i = 0; i < values.length; i++) {
+                if (!isRuntime(values[i]))
+                    continue;
+
+                int index = (int)(values[i] & 0xffffffffL);
+                if (moved[index] < 0) {
+                    moved[index] = size;
+                    kept[size++] = strings[index];
+                }
+                values[i] = STRING | RUNTIME | moved[index];
+            }
+        }
+
+        strings = kept;
+        count = size;
+        limit = Math.max(COLLECT_AT, 2 * size);
+    }
+
+    // conversions at the boundary with the boxed representation, e.g. globals.
+    long encode(Object value) {
+        if (value == null) return NONE;
+        if (value instanceof Boolean) return bool((boolean)value);
+        if (value instanceof Double) return number((double)value);
+        if (value instanceof String) return string((String)value);
+
+        Long encoded = identities.get(value);
+        if (encoded == null) {
+            encoded = OBJECT | objects.size();
+            objects.add(value);
+            identities.put(value, encoded);
+        }
+
+        return encoded;
+    }
+
+    Object decode(long value) {
+        if (isNumber(value)) return asNumber(value);
+        if (isObject(value)) return objects.get((int)(value & 0xffffffffL));
+        if (isString(value)) return asString(value);
+        if (value == NONE) return null;
+        return value == TRUE;
+    }
+}
@@ -0,0 +1,432 @@
+package com.interpreter.zen;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.interpreter.zen.NanBox.*;
+
+/*
+ * engine over NaN-boxed values, structured like the ClosureCompiler
+ * so that the two compare the value representations and nothing else.
+ *
+ * expressions evaluate to a long instead of an Object, and the variables
+ * of a block live in a long[] frame, resolved by TypeInference.
+ * globals stay boxed in the Environment and are converted on access,
+ * since they outlive a single run.
+ */
+class NanBoxCompiler implements Expr.Visitor<NanBoxCompiler.Eval>,
+                                Stmt.Visitor<NanBoxCompiler.Exec> {
+    // sentinel, unwinds the compiler when it meets an unsupported construct.
+    private static class Unsupported extends RuntimeException {}
+
+    interface Eval {
+        long eval(Frame frame);
+    }
+
+    interface Exec {
+        void exec(Frame frame);
+    }
+
+    // a loop condition, evaluated straight to a boolean.
+    interface Test {
+        boolean test(Frame frame);
+    }
+
+    static class Frame {
+        final long[] values;
+        final Frame enclosing;
+
+        Frame(int size, Frame enclosing) {
+            this.values = new long[size];
+            this.enclosing = enclosing;
+        }
+
+        Frame ancestor(int distance) {
+            Frame frame = this;
+            for (int i = 0; i < distance; i++) {
+                frame = frame.enclosing;
+            }
+
+            return frame;
+        }
+    }
+
+    private final NanBox box = new NanBox();
+    private final TypeInference types = new TypeInference();
+    private final Environment globals;
+
+    // frame index of every block variable, and the next free one in the current block.
+    private final Map<TypeInference.Local, Integer> indexes = new HashMap<>();
+    private int frameSize = 0;
+
+    private NanBoxCompiler(Environment globals) {
+        this.globals = globals;
+    }
+
+    static Runnable compile(List<Stmt> statements, Environment globals) {
+        NanBoxCompiler compiler = new NanBoxCompiler(globals);
+        if (!compiler.types.analyze(statements))
+            return null;
+
+        Exec[] program;
+        try {
+            program = compiler.compileAll(statements);
+        } catch (Unsupported error) {
+            return null;
+        }
+
+        // top-level variables are globals, so there is no frame out there.
+        return () -> {
+            for (Exec statement : program) {
+                statement.exec(null);
+            }
+        };
+    }
+
+    private Exec[] compileAll(List<Stmt> statements) {
+        Exec[] compiled = new Exec[statements.size()];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = statements.get(i).accept(this);
+        }
+
+        return compiled;
+    }
+
+    private Eval compile(Expr expr) {
+        return expr.accept(this);
+    }
+
+    @Override
+    public Eval visitLiteralExpr(Expr.Literal expr) {
+        long value = expr.value instanceof String
+            ? box.constant((String)expr.value) : box.encode(expr.value);
+        return frame -> value;
+    }
+
+    // functions only run in the tree engine, whose calls use the frames of Resolver.
+    @Override
+    public Eval visitCallExpr(Expr.Call expr) {
+        throw new Unsupported();
+    }
+
+    // so do classes, whose instances are laid out by their shapes.
+    @Override
+    public Eval visitGetExpr(Expr.Get expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Eval visitSetExpr(Expr.Set expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Eval visitSuperExpr(Expr.Super expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Eval visitThisExpr(Expr.This expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Eval visitGroupingExpr(Expr.Grouping expr) {
+        return compile(expr.expression);
+    }
+
+    @Override
+    public Eval visitUnaryExpr(Expr.Unary expr) {
+        Eval right = compile(expr.right);
+        Token operator = expr.operator;
+
+        switch (operator.type) {
+            case NOT:
+                return frame -> bool(!isTruthy(right.eval(frame)));
+            case MINUS:
+                return frame -> {
+                    long value = right.eval(frame);
+                    if (!isNumber(value))
+                        throw new RuntimeError(operator, "Operand must be a number.");
+                    return number(-asNumber(value));
+                };
+            default:
+                throw new Unsupported();
+        }
+    }
+
+    @Override
+    public Eval visitVariableExpr(Expr.Variable expr) {
+        TypeInference.Slot slot = types.slots().get(expr);
+        if (slot == null) {
+            Token name = expr.name;
+            return frame -> box.encode(globals.get(name));
+        }
+
+        int distance = slot.distance;
+        int index = indexes.get(slot.local);
+        return frame -> frame.ancestor(distance).values[index];
+    }
+
+    @Override
+    public Eval visitAssignExpr(Expr.Assign expr) {
+        Eval value = compile(expr.value);
+        TypeInference.Slot slot = types.slots().get(expr);
+        if (slot == null) {
+            Token name = expr.name;
+            return frame -> {
+                long result = value.eval(frame);
+                globals.assign(name, box.decode(result));
+                return result;
+            };
+        }
+
+        int distance = slot.distance;
+        int index = indexes.get(slot.local);
+        return frame -> {
+            long result = value.eval(frame);
+            frame.ancestor(distance).values[index] = result;
+            return result;
+        };
+    }
+
+    @Override
+    public Eval visitBinaryExpr(Expr.Binary expr) {
+        Eval left = compile(expr.left);
+        Eval right = compile(expr.right);
+        Token operator = expr.operator;
+
+        switch (operator.type) {
+            case MINUS:
+                return frame -> {
+                    long a = left.eval(frame);
+                    long b = right.eval(frame);
+                    checkNumberOperands(operator, a, b);
+                    return number(asNumber(a) - asNumber(b));
+                };
+            case SLASH:
+                return frame -> {
+                    long a = left.eval(frame);
+                    long b = right.eval(frame);
+                    checkNumberOperands(operator, a, b);
+                    return number(asNumber(a) / asNumber(b));
+                };
+            case STAR:
+                return frame -> {
+                    long a = left.eval(frame);
+                    long b = right.eval(frame);
+                    checkNumberOperands(operator, a, b);
+                    return number(asNumber(a) * asNumber(b));
+                };
+            case PLUS:
+                return frame -> {
+                    long a = left.eval(frame);
+                    long b = right.eval(frame);
+                    if (isNumber(a) && isNumber(b)) {
+                        return number(asNumber(a) + asNumber(b));
+                    }
+                    if (isString(a) && isString(b)) {
+                        return box.string(Interpreter.concatenate(box.asString(a), box.asString(b)));
+                    }
+
+                    throw new RuntimeError(operator,
+                        "Operands must either be two numbers or two strings.");
+                };
+
+            case GREATER:
+                return frame -> {
+                    long a = left.eval(frame);
+                    long b = right.eval(frame);
+                    checkNumberOperands(operator, a, b);
+                    return bool(asNumber(a) > asNumber(b));
+                };
+            case GREATER_EQUAL:
+                return frame -> {
+                    long a = left.eval(frame);
+                    long b = right.eval(frame);
+                    checkNumberOperands(operator, a, b);
+                    return bool(asNumber(a) >= asNumber(b));
+                };
+            case LESS:
+                return frame -> {
+                    long a = left.eval(frame);
+                    long b = right.eval(frame);
+                    checkNumberOperands(operator, a, b);
+                    return bool(asNumber(a) < asNumber(b));
+                };
+            case LESS_EQUAL:
+                return frame -> {
+                    long a = left.eval(frame);
+                    long b = right.eval(frame);
+                    checkNumberOperands(operator, a, b);
+                    return bool(asNumber(a) <= asNumber(b));
+                };
+
+            // canonical NaNs make equality of numbers a compare of bits, strings also compare contents.
+            case NOT_EQUAL:
+                return frame -> bool(!box.equal(left.eval(frame), right.eval(frame)));
+            case EQUAL_EQUAL:
+                return frame -> bool(box.equal(left.eval(frame), right.eval(frame)));
+
+            default:
+                throw new Unsupported();
+        }
+    }
+
+    private static void checkNumberOperands(Token operator, long left, long right) {
+        if (isNumber(left) && isNumber(right)) return;
+        throw new RuntimeError(operator, "Operands must be numbers.");
+    }
+
+    @Override
+    public Exec visitBlockStmt(Stmt.Block stmt) {
+        int enclosingSize = frameSize;
+        frameSize = 0;
+        Exec[] body = compileAll(stmt.statements);
+        int size = frameSize;
+        frameSize = enclosingSize;
+
+        return frame -> {
+            Frame inner = new Frame(size, frame);
+            for (Exec statement : body) {
+                statement.exec(inner);
+            }
+        };
+    }
+
+    @Override
+    public Exec visitExpressionStmt(Stmt.Expression stmt) {
+        Eval expression = compile(stmt.expression);
+        return frame -> expression.eval(frame);
+    }
+
+    @Override
+    public Exec visitFunctionStmt(Stmt.Function stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Exec visitClassStmt(Stmt.Class stmt) {
+        throw new Unsupported();
+    }
+
+    // modules are loaded and run by the Interpreter.
+    @Override
+    public Exec visitImportStmt(Stmt.Import stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Exec visitPrintStmt(Stmt.Print stmt) {
+        Eval expression = compile(stmt.expression);
+        return frame ->
+            System.out.println(Interpreter.stringify(box.decode(expression.eval(frame))));
+    }
+
+    @Override
+    public Exec visitReturnStmt(Stmt.Return stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Exec visitVarStmt(Stmt.Var stmt) {
+        Eval initializer = stmt.initializer == null
+            ? frame -> NONE
+            : compile(stmt.initializer);
+
+        TypeInference.Local local = types.local(stmt);
+        if (local == null) {
+            String name = stmt.name.lexeme;
+            return frame -> globals.define(name, box.decode(initializer.eval(frame)));
+        }
+
+        int index = frameSize++;
+        indexes.put(local, index);
+        return frame -> frame.values[index] = initializer.eval(frame);
+    }
+
+    /*
+     * a block body gets one frame per loop instead of one per iteration.
+     * the frame needs no clearing, TypeInference binds every read of a
+     * block variable to a declaration before it, which overwrites its slot.
+     * only loops run code again, so the runtime strings are collected
+     * between their iterations.
+     */
+    @Override
+    public Exec visitWhileStmt(Stmt.While stmt) {
+        Test condition = condition(stmt.condition);
+        Eval increment = stmt.increment == null ? null : compile(stmt.increment);
+
+        if (!(stmt.body instanceof Stmt.Block)) {
+            Exec body = stmt.body.accept(this);
+            return frame -> {
+                while (condition.test(frame)) {
+                    body.exec(frame);
+                    if (increment != null) increment.eval(frame);
+                    if (box.full()) box.collect(frame);
+                }
+            };
+        }
+
+        int enclosingSize = frameSize;
+        frameSize = 0;
+        Exec[] body = compileAll(((Stmt.Block)stmt.body).statements);
+        int size = frameSize;
+        frameSize = enclosingSize;
+
+        return frame -> {
+            Frame inner = new Frame(size, frame);
+            while (condition.test(frame)) {
+                for (Exec statement : body) {
+                    statement.exec(inner);
+                }
+                if (increment != null) increment.eval(frame);
+                if (box.full()) box.collect(inner);
+            }
+        };
+    }
+
+    // comparisons compare their operands directly instead of encoding a boolean.
+    private Test condition(Expr expr) {
+        Token operator = expr instanceof Expr.Binary ? ((Expr.Binary)expr).operator : null;
+        if (operator == null || operator.type != TokenType.LESS && operator.type != TokenType.LESS_EQUAL &&
+            operator.type != TokenType.GREATER && operator.type != TokenType.GREATER_EQUAL) {
+            Eval condition = compile(expr);
+            return frame -> isTruthy(condition.eval(frame));
+        }
+
+        Eval left = compile(((Expr.Binary)expr).left);
+        Eval right = compile(((Expr.Binary)expr).right);
+        switch (operator.type) {
+            case LESS:
+                return frame -> {
+                    long a = left.eval(frame);
+                    long b = right.eval(frame);
+                    checkNumberOperands(operator, a, b);
+                    return asNumber(a) < asNumber(b);
+                };
+            case LESS_EQUAL:
+                return frame -> {
+                    long a = left.eval(frame);
+                    long b = right.eval(frame);
+                    checkNumberOperands(operator, a, b);
+                    return asNumber(a) <= asNumber(b);
+                };
+            case GREATER:
+                return frame -> {
+                    long a = left.eval(frame);
+                    long b = right.eval(frame);
+                    checkNumberOperands(operator, a, b);
+                    return asNumber(a) > asNumber(b);
+                };
+            default:
+                return frame -> {
+                    long a = left.eval(frame);
+                    long b = right.eval(frame);
+                    checkNumberOperands(operator, a, b);
+                    return asNumber(a) >= asNumber(b);
+                };
+        }
+    }
+}
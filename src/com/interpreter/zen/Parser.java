@@ -1,7 +1,10 @@
 package com.interpreter.zen;
 
+import java.util.AbstractList;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import static com.interpreter.zen.TokenType.*;
 
@@ -14,9 +17,65 @@ class Parser {
     private final List<Token> tokens;
     private int current = 0; // points to the next token 
 
+    // segment parsers run concurrently, so they only remember that they failed,
+    // the errors are then reported by a sequential re-parse.
+    private final boolean silent;
+    private boolean failed = false;
+
+    // token streams are only split into segments of at least this many tokens.
+    private static final int MIN_SEGMENT_SIZE = 1 << 16;
+
+    // lazy parsers leave the body of a valid block as a token range,
+    // it is only parsed once the block's statements are first used.
+    private boolean lazy = false;
+
+    // set while parsing a lazy block, whose tokens were already checked.
+    private boolean validated = false;
+
+    // with a profile of an earlier run, the blocks that ran are parsed right away
+    // and the ones that did not are left lazy, whether lazy parsing is on or not.
+    private Profile profile = null;
+
+    // how many blocks and loop bodies the parser is in, imports are only allowed outside of them.
+    private int depth = 0;
+
+    // how many function bodies the parser is in, return is only allowed inside of them.
+    private int functions = 0;
+
+    // how many class bodies the parser is in, this and super are only allowed inside of them;
+    // whether the innermost has a superclass, and whether the innermost function is its init().
+    private int classes = 0;
+    private boolean subclass = false;
+    private boolean initializer = false;
+
     // the parser takes in a list of tokens
     Parser(List<Token> tokens) {
         this.tokens = tokens;
+        this.silent = false;
+    }
+
+    private Parser(List<Token> tokens, boolean silent) {
+        this.tokens = tokens;
+        this.silent = silent;
+    }
+
+    void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    void setProfile(Profile profile) {
+        this.profile = profile;
+    }
+
+    // whether the statements of a block are built, lazy blocks are not until they are used.
+    static boolean isParsed(List<Stmt> statements) {
+        return !(statements instanceof LazyBlock) || ((LazyBlock)statements).statements != null;
+    }
+
+    // the tokens of a block that was not parsed yet, up to its '}'.
+    static List<Token> unparsedTokens(List<Stmt> statements) {
+        LazyBlock block = (LazyBlock)statements;
+        return block.tokens.subList(block.start, block.close + 1);
     }
 
     List<Stmt> parse() {
@@ -28,6 +87,121 @@ class Parser {
         return statements;
     }
 
+    // one top-level statement at a time, for Zen's --stream mode.
+    boolean hasMore() {
+        return !isAtEnd();
+    }
+
+    // null for a statement with a syntax error, which is reported.
+    Stmt parseNext() {
+        return declaration();
+    }
+
+    // index of the next token, the ones before the previous can be released.
+    int position() {
+        return current;
+    }
+
+    // parse(), also collecting the first token of every top-level statement.
+    List<Stmt> parse(List<Token> firstTokens) {
+        List<Stmt> statements = new ArrayList<>();
+        while (!isAtEnd()) {
+            firstTokens.add(peek());
+            statements.add(declaration());
+        }
+
+        return statements;
+    }
+
+    // the same for the tokens of an edited region, null if it has a syntax error.
+    static List<Stmt> parseRegion(List<Token> tokens, List<Token> firstTokens, boolean lazy) {
+        Parser parser = new Parser(tokens, true);
+        parser.lazy = lazy;
+        List<Stmt> statements = parser.parse(firstTokens);
+        return parser.failed ? null : statements;
+    }
+
+    /*
+     * splits the tokens at top-level statement boundaries,
+     * parses the segments on the pool and merges the statements in order.
+     * if any segment has a syntax error, the whole stream is parsed again
+     * sequentially, so errors are reported exactly as parse() reports them.
+     */
+    static List<Stmt> parseParallel(List<Token> tokens, ForkJoinPool pool, boolean lazy,
+                                    Profile profile) {
+        int segmentCount = Math.min(pool.getParallelism(), tokens.size() / MIN_SEGMENT_SIZE);
+        if (segmentCount < 2)
+            return sequential(tokens, lazy, profile);
+
+        List<Parser> segments = split(tokens, tokens.size() / segmentCount);
+        List<ForkJoinTask<List<Stmt>>> tasks = new ArrayList<>();
+        for (Parser segment : segments) {
+            segment.lazy = lazy;
+            segment.profile = profile;
+            tasks.add(pool.submit(() -> segment.parse()));
+        }
+
+        List<Stmt> statements = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            List<Stmt> parsed = tasks.get(i).join();
+            if (segments.get(i).failed)
+                return sequential(tokens, lazy, profile);
+            statements.addAll(parsed);
+        }
+
+        return statements;
+    }
+
+    private static List<Stmt> sequential(List<Token> tokens, boolean lazy, Profile profile) {
+        Parser parser = new Parser(tokens);
+        parser.lazy = lazy;
+        parser.profile = profile;
+        return parser.parse();
+    }
+
+    /*
+     * a statement ends at a ';' or '}' outside of any braces or parentheses.
+     * every segment gets its own EOF, so that the segment parsers stop there.
+     */
+    private static List<Parser> split(List<Token> tokens, int segmentSize) {
+        List<Parser> segments = new ArrayList<>();
+        Token eof = tokens.get(tokens.size() - 1);
+        int segmentStart = 0;
+        int depth = 0;
+
+        for (int i = 0; i < tokens.size() - 1; i++) {
+            switch (tokens.get(i).type) {
+                case LEFT_BRACE:
+                case LEFT_PAREN:
+                    depth++;
+                    continue;
+                case RIGHT_BRACE:
+                case RIGHT_PAREN:
+                    depth--;
+                    break;
+                default:
+                    break;
+            }
+
+            TokenType type = tokens.get(i).type;
+            boolean boundary = depth == 0 && (type == SEMICOLON || type == RIGHT_BRACE);
+            if (boundary && i + 1 - segmentStart >= segmentSize) {
+                segments.add(segment(tokens, segmentStart, i + 1, eof));
+                segmentStart = i + 1;
+            }
+        }
+
+        segments.add(segment(tokens, segmentStart, tokens.size() - 1, eof));
+        return segments;
+    }
+
+    private static Parser segment(List<Token> tokens, int from, int to, Token eof) {
+        List<Token> segment = new ArrayList<>(to - from + 1);
+        segment.addAll(tokens.subList(from, to));
+        segment.add(eof);
+        return new Parser(segment, true);
+    }
+
     // expression -> assignment ;
     private Expr expression() {
         return assignment();
@@ -35,6 +209,8 @@ class Parser {
 
     private Stmt declaration() {
         try {
+            if (match(CLASS)) return classDeclaration();
+            if (match(FUN)) return function("function");
             if (match(VAR)) return varDeclaration();
 
             return statement();
@@ -45,20 +221,107 @@ class Parser {
         }
     }
 
-    // statement -> printStmt | exprStmt ; 
+    // statement -> forStmt | importStmt | printStmt | returnStmt | whileStmt | exprStmt | block ; 
     private Stmt statement() {
+        if (match(FOR))
+            return forStatement();
+        if (match(IMPORT))
+            return importStatement();
+        if (match(RETURN))
+            return returnStatement();
+        if (match(WHILE))
+            return whileStatement();
         if (match(PRINT)) 
             return printStatement();
         if (match(LEFT_BRACE))
-            return new Stmt.Block(block());
+            return new Stmt.Block(body());
 
         return expressionStatement();
     }
 
+    // whileStmt -> "while" "(" expression ")" statement ;
+    private Stmt whileStatement() {
+        Token keyword = previous();
+        consume(LEFT_PAREN, "Expect '(' after 'while'.");
+        Expr condition = expression();
+        consume(RIGHT_PAREN, "Expect ')' after condition.");
+
+        return new Stmt.While(keyword, condition, loopBody(), null);
+    }
+
+    /*
+     * forStmt -> "for" "(" ( varDecl | exprStmt | ";" ) expression? ";" expression? ")" statement ;
+     * becomes a while loop that runs the increment after the body,
+     * inside a block of its own with the initializer, if there is one.
+     */
+    private Stmt forStatement() {
+        Token keyword = previous();
+        consume(LEFT_PAREN, "Expect '(' after 'for'.");
+
+        Stmt initializer;
+        if (match(SEMICOLON)) {
+            initializer = null;
+        } else if (match(VAR)) {
+            initializer = varDeclaration();
+        } else {
+            initializer = expressionStatement();
+        }
+
+        Expr condition = check(SEMICOLON) ? new Expr.Literal(true) : expression();
+        consume(SEMICOLON, "Expect ';' after loop condition.");
+
+        Expr increment = check(RIGHT_PAREN) ? null : expression();
+        consume(RIGHT_PAREN, "Expect ')' after for clauses.");
+
+        Stmt loop = new Stmt.While(keyword, condition, loopBody(), increment);
+        if (initializer == null)
+            return loop;
+
+        List<Stmt> statements = new ArrayList<>();
+        statements.add(initializer);
+        statements.add(loop);
+        return new Stmt.Block(statements);
+    }
+
+    private Stmt loopBody() {
+        depth++;
+        try {
+            return statement();
+        } finally {
+            depth--;
+        }
+    }
+
+    // importStmt -> "import" STRING ";" ;
+    private Stmt importStatement() {
+        Token keyword = previous();
+        // modules are loaded before the script runs, so they must not depend on control flow.
+        if (depth > 0)
+            error(keyword, "Imports are only allowed at the top level.");
+
+        Token path = consume(STRING, "Expect module path after 'import'.");
+        consume(SEMICOLON, "Expect ';' after module path.");
+        return new Stmt.Import(keyword, path);
+    }
+
+    // returnStmt -> "return" expression? ";" ;
+    private Stmt returnStatement() {
+        Token keyword = previous();
+        if (functions == 0)
+            error(keyword, "Can't return from top-level code.");
+
+        Expr value = check(SEMICOLON) ? null : expression();
+        if (value != null && initializer)
+            error(keyword, "Can't return a value from an initializer.");
+        consume(SEMICOLON, "Expect ';' after return value.");
+        return new Stmt.Return(keyword, value);
+    }
+
     private Stmt printStatement() {
+        Token keyword = previous();
         Expr value = expression();
         consume(SEMICOLON, "Expect ';' after value.");
-        return new Stmt.Print(value);
+        return new Stmt.Print(keyword, value);
     }
 
     private Stmt varDeclaration() {
@@ -74,23 +337,367 @@ class Parser {
         return new Stmt.Var(name, initializer);
     }
 
+    // classDecl -> "class" IDENTIFIER ( "<" IDENTIFIER )? "{" function* "}" ;
+    private Stmt classDeclaration() {
+        Token name = consume(IDENTIFIER, "Expect class name.");
+
+        Expr.Variable superclass = null;
+        if (match(LESS)) {
+            consume(IDENTIFIER, "Expect superclass name.");
+            superclass = new Expr.Variable(previous());
+            if (superclass.name.lexeme.equals(name.lexeme))
+                error(superclass.name, "A class can't inherit from itself.");
+        }
+
+        consume(LEFT_BRACE, "Expect '{' before class body.");
+
+        boolean enclosingSubclass = subclass;
+        classes++;
+        subclass = superclass != null;
+        List<Stmt.Function> methods = new ArrayList<>();
+        try {
+            while (!check(RIGHT_BRACE) && !isAtEnd()) {
+                methods.add(function("method"));
+            }
+        } finally {
+            classes--;
+            subclass = enclosingSubclass;
+        }
+
+        consume(RIGHT_BRACE, "Expect '}' after class body.");
+        return new Stmt.Class(name, superclass, methods);
+    }
+
+    // function -> IDENTIFIER "(" ( IDENTIFIER ( "," IDENTIFIER )* )? ")" block ;
+    private Stmt.Function function(String kind) {
+        Token name = consume(IDENTIFIER, "Expect " + kind + " name.");
+        consume(LEFT_PAREN, "Expect '(' after " + kind + " name.");
+
+        List<Token> params = new ArrayList<>();
+        if (!check(RIGHT_PAREN)) {
+            do {
+                if (params.size() >= 255)
+                    error(peek(), "Can't have more than 255 parameters.");
+                params.add(consume(IDENTIFIER, "Expect parameter name."));
+            } while (match(COMMA));
+        }
+        consume(RIGHT_PAREN, "Expect ')' after parameters.");
+
+        consume(LEFT_BRACE, "Expect '{' before " + kind + " body.");
+        boolean enclosingInitializer = initializer;
+        functions++;
+        initializer = kind.equals("method") && name.lexeme.equals("init");
+        try {
+            return new Stmt.Function(name, params, body());
+        } finally {
+            functions--;
+            initializer = enclosingInitializer;
+        }
+    }
+
     private Stmt expressionStatement() {
         Expr expr = expression();
-        consume(SEMICOLON, "Expect ';' after expression.");
-        return new Stmt.Expression(expr);
+        Token semicolon = consume(SEMICOLON, "Expect ';' after expression.");
+        return new Stmt.Expression(expr, semicolon);
     }
 
     private List<Stmt> block() {
         List<Stmt> statements = new ArrayList<>();
 
-        while (!check(RIGHT_BRACE) && !isAtEnd()) {
-            statements.add(declaration());
+        depth++;
+        try {
+            while (!check(RIGHT_BRACE) && !isAtEnd()) {
+                statements.add(declaration());
+            }
+        } finally {
+            depth--;
         }
 
         consume(RIGHT_BRACE, "Expect '}' after block.");
         return statements;
     }
 
+    // the statements of a block whose '{' was just consumed.
+    private List<Stmt> body() {
+        if (profile == null)
+            return lazy ? lazyBlock() : block();
+
+        int close = matchingBrace(current);
+        if (close >= 0 && !profile.ran(previous().offset, tokens.get(close).offset))
+            return lazyBlock();
+        return block();
+    }
+
+    /*
+     * the body is only recognised, without building any nodes.
+     * the recogniser is conservative: whatever it does not accept,
+     * including every syntax error, is parsed right away by block(),
+     * so errors are reported exactly as without lazy parsing.
+     */
+    private List<Stmt> lazyBlock() {
+        int close = validated ? matchingBrace(current) : recognizeBlock(current);
+        if (close < 0)
+            return block();
+
+        List<Stmt> statements = new LazyBlock(this, current, close);
+        current = close + 1;
+        return statements;
+    }
+
+    // statements of a block, parsed from its tokens on first use,
+    // in the function and class the block was found in.
+    private static class LazyBlock extends AbstractList<Stmt> {
+        private List<Token> tokens;
+        private final int start;
+        private final int close;
+        private final int functions;
+        private final int classes;
+        private final boolean subclass;
+        private final boolean initializer;
+        private List<Stmt> statements = null;
+
+        LazyBlock(Parser parser, int start, int close) {
+            this.tokens = parser.tokens;
+            this.start = start;
+            this.close = close;
+            this.functions = parser.functions;
+            this.classes = parser.classes;
+            this.subclass = parser.subclass;
+            this.initializer = parser.initializer;
+        }
+
+        private List<Stmt> statements() {
+            if (statements == null) {
+                Parser parser = new Parser(tokens);
+                parser.current = start;
+                parser.lazy = true;
+                parser.validated = true;
+                parser.functions = functions;
+                parser.classes = classes;
+                parser.subclass = subclass;
+                parser.initializer = initializer;
+                statements = parser.block();
+                tokens = null;
+            }
+
+            return statements;
+        }
+
+        @Override
+        public Stmt get(int index) {
+            return statements().get(index);
+        }
+
+        @Override
+        public int size() {
+            return statements().size();
+        }
+    }
+
+    // the index of the '}' closing the block that starts at index, -1 if there is none.
+    private int matchingBrace(int index) {
+        int depth = 0;
+        for (;; index++) {
+            TokenType type = tokens.get(index).type;
+            if (type == EOF) return -1;
+            if (type == LEFT_BRACE) depth++;
+            if (type == RIGHT_BRACE && depth-- == 0) return index;
+        }
+    }
+
+    /*
+     * each recogniser takes the index of its first token and returns the
+     * index after the last one, or the index of the block's '}'; -1 for rejected.
+     * what the parser only rejects in some functions or classes is checked
+     * against the ones the recogniser is in, class declarations are not accepted.
+     */
+    private int recognizeBlock(int index) {
+        while (index >= 0) {
+            switch (tokens.get(index).type) {
+                case RIGHT_BRACE:
+                    return index;
+                case EOF:
+                    return -1;
+                case VAR:
+                    index = recognizeVar(index);
+                    break;
+                case FUN:
+                    index = recognizeFunction(index);
+                    break;
+                default:
+                    index = recognizeStatement(index);
+                    break;
+            }
+        }
+
+        return -1;
+    }
+
+    private int recognizeStatement(int index) {
+        switch (tokens.get(index).type) {
+            case LEFT_BRACE:
+                index = recognizeBlock(index + 1);
+                return index >= 0 ? index + 1 : -1;
+            case PRINT:
+                return expect(recognizeExpression(index + 1), SEMICOLON);
+            case RETURN:
+                if (functions == 0) return -1;
+                if (tokens.get(index + 1).type == SEMICOLON) return index + 2;
+                if (initializer) return -1;
+                return expect(recognizeExpression(index + 1), SEMICOLON);
+            case WHILE:
+                index = expect(recognizeExpression(expect(index + 1, LEFT_PAREN)), RIGHT_PAREN);
+                return index >= 0 ? recognizeStatement(index) : -1;
+            case FOR:
+                index = expect(index + 1, LEFT_PAREN);
+                if (index < 0) return -1;
+                if (tokens.get(index).type == VAR) {
+                    index = recognizeVar(index);
+                } else if (tokens.get(index).type != SEMICOLON) {
+                    index = expect(recognizeExpression(index), SEMICOLON);
+                } else {
+                    index++;
+                }
+                if (index >= 0 && tokens.get(index).type != SEMICOLON)
+                    index = recognizeExpression(index);
+                index = expect(index, SEMICOLON);
+                if (index >= 0 && tokens.get(index).type != RIGHT_PAREN)
+                    index = recognizeExpression(index);
+                index = expect(index, RIGHT_PAREN);
+                return index >= 0 ? recognizeStatement(index) : -1;
+            default:
+                return expect(recognizeExpression(index), SEMICOLON);
+        }
+    }
+
+    private int recognizeFunction(int index) {
+        if (tokens.get(index + 1).type != IDENTIFIER) return -1;
+        index = expect(index + 2, LEFT_PAREN);
+        if (index < 0) return -1;
+
+        if (tokens.get(index).type == IDENTIFIER) {
+            int params = 1;
+            index++;
+            while (tokens.get(index).type == COMMA) {
+                if (tokens.get(index + 1).type != IDENTIFIER || ++params > 255) return -1;
+                index += 2;
+            }
+        }
+        index = expect(expect(index, RIGHT_PAREN), LEFT_BRACE);
+        if (index < 0) return -1;
+
+        boolean enclosingInitializer = initializer;
+        functions++;
+        initializer = false;
+        try {
+            index = recognizeBlock(index);
+        } finally {
+            functions--;
+            initializer = enclosingInitializer;
+        }
+        return index >= 0 ? index + 1 : -1;
+    }
+
+    private int recognizeVar(int index) {
+        if (tokens.get(index + 1).type != IDENTIFIER) return -1;
+        index += 2;
+        if (tokens.get(index).type == EQUAL)
+            index = recognizeExpression(index + 1);
+        return expect(index, SEMICOLON);
+    }
+
+    // set by recognizeOperand() for a bare name or a property, which can be assigned to.
+    private boolean assignable;
+
+    // precedence does not matter here, only that an assignment targets a name or a property.
+    private int recognizeExpression(int index) {
+        if (index < 0) return -1;
+        index = recognizeOperand(index);
+        boolean first = true;
+        while (index >= 0) {
+            switch (tokens.get(index).type) {
+                case NOT_EQUAL: case EQUAL_EQUAL:
+                case GREATER: case GREATER_EQUAL: case LESS: case LESS_EQUAL:
+                case PLUS: case MINUS: case STAR: case SLASH:
+                    index = recognizeOperand(index + 1);
+                    first = false;
+                    break;
+                case EQUAL:
+                    if (!first || !assignable) return -1;
+                    return recognizeExpression(index + 1);
+                default:
+                    return index;
+            }
+        }
+
+        return -1;
+    }
+
+    private int recognizeOperand(int index) {
+        int start = index;
+        while (tokens.get(index).type == MINUS || tokens.get(index).type == NOT) {
+            index++;
+        }
+        boolean prefixed = index != start;
+
+        boolean property = false;
+        switch (tokens.get(index).type) {
+            case TRUE: case FALSE: case NONE:
+            case NUMBER: case STRING: case IDENTIFIER:
+                index++;
+                break;
+            case THIS:
+                if (classes == 0) return -1;
+                index++;
+                break;
+            case SUPER:
+                if (classes == 0 || !subclass) return -1;
+                index = expect(expect(index + 1, DOT), IDENTIFIER);
+                break;
+            case LEFT_PAREN:
+                index = expect(recognizeExpression(index + 1), RIGHT_PAREN);
+                break;
+            default:
+                return -1;
+        }
+        boolean name = index == start + 1 && tokens.get(start).type == IDENTIFIER;
+
+        // calls and properties.
+        while (index >= 0) {
+            if (tokens.get(index).type == DOT) {
+                index = expect(index + 1, IDENTIFIER);
+                property = true;
+            } else if (tokens.get(index).type == LEFT_PAREN) {
+                index = recognizeArguments(index + 1);
+                property = false;
+                name = false;
+            } else {
+                break;
+            }
+        }
+
+        assignable = !prefixed && (name || property);
+        return index;
+    }
+
+    // the arguments of a call after its '(', up to and including the ')'.
+    private int recognizeArguments(int index) {
+        if (tokens.get(index).type == RIGHT_PAREN)
+            return index + 1;
+
+        int arguments = 1;
+        index = recognizeExpression(index);
+        while (index >= 0 && tokens.get(index).type == COMMA) {
+            if (++arguments > 255) return -1;
+            index = recognizeExpression(index + 1);
+        }
+        return expect(index, RIGHT_PAREN);
+    }
+
+    private int expect(int index, TokenType type) {
+        return index >= 0 && tokens.get(index).type == type ? index + 1 : -1;
+    }
+
     private Expr assignment() {
         Expr expr = equality();
 
@@ -101,6 +708,9 @@ class Parser {
             if (expr instanceof Expr.Variable) {
                 Token name = ((Expr.Variable)expr).name;
                 return new Expr.Assign(name, value);
+            } else if (expr instanceof Expr.Get) {
+                Expr.Get get = (Expr.Get)expr;
+                return new Expr.Set(get.object, get.name, value, new InlineCache());
             }
 
             error(equals, "Invalid assignment target.");
@@ -161,7 +771,7 @@ class Parser {
         return expr;
     }
 
-    // unary -> ( "-" | "!" ) unary | primary ;
+    // unary -> ( "-" | "!" ) unary | call ;
     private Expr unary() {
         if (match(MINUS, NOT)) {
             Token operator = previous();
@@ -170,15 +780,63 @@ class Parser {
             return new Expr.Unary(operator, right);
         }
 
-        return primary();
+        return call();
     }
 
-    // primary -> NUMBER | STRING | "true" | "false" | "none" | "(" expression ")"
+    // call -> primary ( "(" ( expression ( "," expression )* )? ")" | "." IDENTIFIER )* ;
+    private Expr call() {
+        Expr expr = primary();
+
+        while (true) {
+            if (match(DOT)) {
+                Token name = consume(IDENTIFIER, "Expect property name after '.'.");
+                expr = new Expr.Get(expr, name, new InlineCache());
+                continue;
+            }
+            if (!match(LEFT_PAREN))
+                break;
+
+            List<Expr> arguments = new ArrayList<>();
+            if (!check(RIGHT_PAREN)) {
+                do {
+                    if (arguments.size() >= 255)
+                        error(peek(), "Can't have more than 255 arguments.");
+                    arguments.add(expression());
+                } while (match(COMMA));
+            }
+
+            Token paren = consume(RIGHT_PAREN, "Expect ')' after arguments.");
+            expr = new Expr.Call(expr, paren, arguments);
+        }
+
+        return expr;
+    }
+
+    // primary -> NUMBER | STRING | "true" | "false" | "none" | "this" | "(" expression ")"
+    //          | IDENTIFIER | "super" "." IDENTIFIER ;
     private Expr primary() {
         if (match(TRUE)) return new Expr.Literal(true);
         if (match(FALSE)) return new Expr.Literal(false);
         if (match(NONE)) return new Expr.Literal(null);
 
+        if (match(THIS)) {
+            if (classes == 0)
+                error(previous(), "Can't use 'this' outside of a class.");
+            return new Expr.This(previous());
+        }
+
+        if (match(SUPER)) {
+            Token keyword = previous();
+            if (classes == 0) {
+                error(keyword, "Can't use 'super' outside of a class.");
+            } else if (!subclass) {
+                error(keyword, "Can't use 'super' in a class with no superclass.");
+            }
+            consume(DOT, "Expect '.' after 'super'.");
+            Token method = consume(IDENTIFIER, "Expect superclass method name.");
+            return new Expr.Super(keyword, method);
+        }
+
         if (match(NUMBER, STRING)) {
             return new Expr.Literal(previous().literal);
         }
@@ -236,7 +894,11 @@ class Parser {
     }
 
     private ParseError error(Token token, String message) {
-        Zen.error(token, message);
+        if (silent) {
+            failed = true;
+        } else {
+            Zen.error(token, message);
+        }
         return new ParseError();
     }
 
@@ -252,6 +914,7 @@ class Parser {
                 case VAR:
                 case FOR:
                 case IF:
+                case IMPORT:
                 case WHILE:
                 case PRINT:
                 case RETURN:
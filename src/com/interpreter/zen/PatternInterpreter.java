@@ -0,0 +1,224 @@
+package com.interpreter.zen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * tree-walking engine over the record form of the AST, see GenerateAST --records.
+ *
+ * the parser's nodes are converted once, then every node is dispatched by
+ * pattern matching on its record type instead of a double dispatch through
+ * accept() and a visitor. the most frequent node types are tested first,
+ * and each test is a type check the JIT profiles like any other branch.
+ * semantics and error messages are the tree-walking Interpreter's.
+ */
+class PatternInterpreter {
+    // sentinel, unwinds the conversion when it meets an unsupported construct.
+    private static class Unsupported extends RuntimeException {}
+
+    private Environment environment;
+
+    private PatternInterpreter(Environment globals) {
+        this.environment = globals;
+    }
+
+    static Runnable compile(List<Stmt> statements, Environment globals) {
+        List<StmtNode> program;
+        try {
+            program = convert(statements);
+        } catch (Unsupported error) {
+            return null;
+        }
+
+        PatternInterpreter interpreter = new PatternInterpreter(globals);
+        return () -> {
+            for (StmtNode statement : program) {
+                interpreter.execute(statement);
+            }
+        };
+    }
+
+    private void execute(StmtNode stmt) {
+        if (stmt instanceof StmtNode.Expression expression) {
+            evaluate(expression.expression());
+        } else if (stmt instanceof StmtNode.Var var) {
+            Object value = var.initializer() == null ? null : evaluate(var.initializer());
+            environment.define(var.name().lexeme, value);
+        } else if (stmt instanceof StmtNode.Print print) {
+            System.out.println(Interpreter.stringify(evaluate(print.expression())));
+        } else if (stmt instanceof StmtNode.Block block) {
+            Environment previous = environment;
+            try {
+                environment = new Environment(previous);
+                for (StmtNode statement : block.statements()) {
+                    execute(statement);
+                }
+            } finally {
+                environment = previous;
+            }
+        } else if (stmt instanceof StmtNode.While loop) {
+            loop(loop);
+        }
+    }
+
+    // a block body runs in one environment per loop, emptied every iteration, like in the Interpreter.
+    private void loop(StmtNode.While loop) {
+        if (!(loop.body() instanceof StmtNode.Block block)) {
+            while (Interpreter.isTruthy(evaluate(loop.condition()))) {
+                execute(loop.body());
+                if (loop.increment() != null) evaluate(loop.increment());
+            }
+            return;
+        }
+
+        Environment previous = environment;
+        Environment inner = new Environment(previous);
+        while (Interpreter.isTruthy(evaluate(loop.condition()))) {
+            inner.clear();
+            try {
+                environment = inner;
+                for (StmtNode statement : block.statements()) {
+                    execute(statement);
+                }
+            } finally {
+                environment = previous;
+            }
+            if (loop.increment() != null) evaluate(loop.increment());
+        }
+    }
+
+    private Object evaluate(ExprNode expr) {
+        if (expr instanceof ExprNode.Binary binary) {
+            return binary(binary);
+        } else if (expr instanceof ExprNode.Variable variable) {
+            return environment.get(variable.name());
+        } else if (expr instanceof ExprNode.Literal literal) {
+            return literal.value();
+        } else if (expr instanceof ExprNode.Assign assign) {
+            Object value = evaluate(assign.value());
+            environment.assign(assign.name(), value);
+            return value;
+        } else if (expr instanceof ExprNode.Grouping grouping) {
+            return evaluate(grouping.expression());
+        } else if (expr instanceof ExprNode.Unary unary) {
+            Object right = evaluate(unary.right());
+            if (unary.operator().type == TokenType.NOT)
+                return !Interpreter.isTruthy(right);
+
+            Interpreter.checkNumberOperand(unary.operator(), right);
+            return -(double)right;
+        }
+
+        // unreachable, convert() only builds the nodes above.
+        return null;
+    }
+
+    private Object binary(ExprNode.Binary expr) {
+        Object left = evaluate(expr.left());
+        Object right = evaluate(expr.right());
+        Token operator = expr.operator();
+
+        switch (operator.type) {
+            case MINUS:
+                Interpreter.checkNumberOperands(operator, left, right);
+                return (double)left - (double)right;
+            case SLASH:
+                Interpreter.checkNumberOperands(operator, left, right);
+                return (double)left / (double)right;
+            case STAR:
+                Interpreter.checkNumberOperands(operator, left, right);
+                return (double)left * (double)right;
+            case PLUS:
+                if (left instanceof Double && right instanceof Double) {
+                    return (double)left + (double)right;
+                }
+                if (left instanceof String && right instanceof String) {
+                    return Interpreter.concatenate((String)left, (String)right);
+                }
+
+                throw new RuntimeError(operator,
+                    "Operands must either be two numbers or two strings.");
+
+            case GREATER:
+                Interpreter.checkNumberOperands(operator, left, right);
+                return (double)left > (double)right;
+            case GREATER_EQUAL:
+                Interpreter.checkNumberOperands(operator, left, right);
+                return (double)left >= (double)right;
+            case LESS:
+                Interpreter.checkNumberOperands(operator, left, right);
+                return (double)left < (double)right;
+            case LESS_EQUAL:
+                Interpreter.checkNumberOperands(operator, left, right);
+                return (double)left <= (double)right;
+
+            case NOT_EQUAL: return !Interpreter.isEqual(left, right);
+            case EQUAL_EQUAL: return Interpreter.isEqual(left, right);
+
+            default:
+                return null;
+        }
+    }
+
+    // the parser builds the visitor form, the records are made from it once.
+    private static List<StmtNode> convert(List<Stmt> statements) {
+        List<StmtNode> nodes = new ArrayList<>(statements.size());
+        for (Stmt statement : statements) {
+            nodes.add(convert(statement));
+        }
+
+        return nodes;
+    }
+
+    private static StmtNode convert(Stmt stmt) {
+        if (stmt instanceof Stmt.Expression) {
+            Stmt.Expression expression = (Stmt.Expression)stmt;
+            return new StmtNode.Expression(convert(expression.expression), expression.semicolon);
+        }
+        if (stmt instanceof Stmt.Var) {
+            Stmt.Var var = (Stmt.Var)stmt;
+            return new StmtNode.Var(var.name, var.initializer == null ? null : convert(var.initializer));
+        }
+        if (stmt instanceof Stmt.Print) {
+            Stmt.Print print = (Stmt.Print)stmt;
+            return new StmtNode.Print(print.keyword, convert(print.expression));
+        }
+        if (stmt instanceof Stmt.Block) {
+            return new StmtNode.Block(convert(((Stmt.Block)stmt).statements));
+        }
+        if (stmt instanceof Stmt.While) {
+            Stmt.While loop = (Stmt.While)stmt;
+            return new StmtNode.While(loop.keyword, convert(loop.condition), convert(loop.body),
+                loop.increment == null ? null : convert(loop.increment));
+        }
+
+        // modules, functions and classes are run by the Interpreter.
+        throw new Unsupported();
+    }
+
+    private static ExprNode convert(Expr expr) {
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)expr;
+            return new ExprNode.Binary(convert(binary.left), binary.operator, convert(binary.right));
+        }
+        if (expr instanceof Expr.Variable) {
+            return new ExprNode.Variable(((Expr.Variable)expr).name);
+        }
+        if (expr instanceof Expr.Literal) {
+            return new ExprNode.Literal(((Expr.Literal)expr).value);
+        }
+        if (expr instanceof Expr.Assign) {
+            Expr.Assign assign = (Expr.Assign)expr;
+            return new ExprNode.Assign(assign.name, convert(assign.value));
+        }
+        if (expr instanceof Expr.Grouping) {
+            return new ExprNode.Grouping(convert(((Expr.Grouping)expr).expression));
+        }
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary)expr;
+            return new ExprNode.Unary(unary.operator, convert(unary.right));
+        }
+
+        throw new Unsupported();
+    }
+}
@@ -0,0 +1,190 @@
+package com.interpreter.zen;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/*
+ * immutable map from names to values, a hash array mapped trie.
+ *
+ * every level of the trie consumes 5 bits of the hash: a node keeps a 32 bit
+ * bitmap of the children it has and an array with only those children, so
+ * a lookup is a few array reads and put() copies just the nodes on the path
+ * to the key, at most 7 of them, sharing everything else with the old map.
+ * keys with the same hash end up together in a collision node.
+ *
+ * values may be null, which is how none is stored.
+ */
+final class PersistentMap {
+    static final PersistentMap EMPTY = new PersistentMap(BitmapNode.EMPTY);
+
+    // returned by Node.find() for a key that is not in the map.
+    private static final Object MISSING = new Object();
+
+    private final Node root;
+
+    private PersistentMap(Node root) {
+        this.root = root;
+    }
+
+    boolean containsKey(String key) {
+        return root.find(0, key.hashCode(), key) != MISSING;
+    }
+
+    // the value bound to key, or missing if there is none.
+    Object get(String key, Object missing) {
+        Object value = root.find(0, key.hashCode(), key);
+        return value == MISSING ? missing : value;
+    }
+
+    PersistentMap put(String key, Object value) {
+        Node updated = root.put(0, key.hashCode(), key, value);
+        return updated == root ? this : new PersistentMap(updated);
+    }
+
+    void forEach(BiConsumer<String, Object> action) {
+        root.forEach(action);
+    }
+
+    private interface Node {
+        Object find(int shift, int hash, String key);
+        Node put(int shift, int hash, String key, Object value);
+        void forEach(BiConsumer<String, Object> action);
+    }
+
+    /*
+     * entries are pairs in the array: a key and its value,
+     * or null and the child node for the keys below it.
+     */
+    private static final class BitmapNode implements Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        @Override
+        public Object find(int shift, int hash, String key) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) return MISSING;
+
+            int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object entryKey = array[index];
+            if (entryKey == null)
+                return ((Node)array[index + 1]).find(shift + 5, hash, key);
+
+            return key.equals(entryKey) ? array[index + 1] : MISSING;
+        }
+
+        @Override
+        public Node put(int shift, int hash, String key, Object value) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+
+            if ((bitmap & bit) == 0) {
+                Object[] inserted = new Object[array.length + 2];
+                System.arraycopy(array, 0, inserted, 0, index);
+                inserted[index] = key;
+                inserted[index + 1] = value;
+                System.arraycopy(array, index, inserted, index + 2, array.length - index);
+                return new BitmapNode(bitmap | bit, inserted);
+            }
+
+            Object entryKey = array[index];
+            Object entryValue = array[index + 1];
+            if (entryKey == null) {
+                Node child = ((Node)entryValue).put(shift + 5, hash, key, value);
+                return child == entryValue ? this : replace(index, null, child);
+            }
+            if (key.equals(entryKey)) {
+                return entryValue == value ? this : replace(index, entryKey, value);
+            }
+
+            // two keys in one place: push both down a level.
+            Node child = pair(shift + 5, (String)entryKey, entryValue, hash, key, value);
+            return replace(index, null, child);
+        }
+
+        private BitmapNode replace(int index, Object key, Object value) {
+            Object[] copy = array.clone();
+            copy[index] = key;
+            copy[index + 1] = value;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        @Override
+        public void forEach(BiConsumer<String, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node)array[i + 1]).forEach(action);
+                } else {
+                    action.accept((String)array[i], array[i + 1]);
+                }
+            }
+        }
+    }
+
+    private static Node pair(int shift, String key1, Object value1, int hash2, String key2, Object value2) {
+        int hash1 = key1.hashCode();
+        if (hash1 == hash2)
+            return new CollisionNode(hash1, new String[] { key1, key2 }, new Object[] { value1, value2 });
+
+        return BitmapNode.EMPTY.put(shift, hash1, key1, value1).put(shift, hash2, key2, value2);
+    }
+
+    // keys whose hashes are equal in all 32 bits.
+    private static final class CollisionNode implements Node {
+        private final int hash;
+        private final String[] keys;
+        private final Object[] values;
+
+        CollisionNode(int hash, String[] keys, Object[] values) {
+            this.hash = hash;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        @Override
+        public Object find(int shift, int hash, String key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (key.equals(keys[i])) return values[i];
+            }
+
+            return MISSING;
+        }
+
+        @Override
+        public Node put(int shift, int hash, String key, Object value) {
+            if (hash != this.hash) {
+                // the collision moves below a bitmap node that also holds the new key.
+                Node node = new BitmapNode(1 << ((this.hash >>> shift) & 31), new Object[] { null, this });
+                return node.put(shift, hash, key, value);
+            }
+
+            for (int i = 0; i < keys.length; i++) {
+                if (!key.equals(keys[i])) continue;
+                if (values[i] == value) return this;
+
+                Object[] copy = values.clone();
+                copy[i] = value;
+                return new CollisionNode(hash, keys, copy);
+            }
+
+            String[] grownKeys = Arrays.copyOf(keys, keys.length + 1);
+            Object[] grownValues = Arrays.copyOf(values, values.length + 1);
+            grownKeys[keys.length] = key;
+            grownValues[values.length] = value;
+            return new CollisionNode(hash, grownKeys, grownValues);
+        }
+
+        @Override
+        public void forEach(BiConsumer<String, Object> action) {
+            for (int i = 0; i < keys.length; i++) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+}
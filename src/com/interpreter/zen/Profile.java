@@ -0,0 +1,327 @@
+package com.interpreter.zen;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/*
+ * what a run of a script found out about it, for --record-profile and --profile.
+ *
+ * while recording, the Interpreter counts every statement it executes, the
+ * kinds of operands of every binary operator, and how many variables blocks
+ * and instances of classes end up with. the counts are kept by node and
+ * written by the position of a token of the node in the source, so the next
+ * run of the same script can find them again. a profile is only used for the
+ * source it was recorded for, any edit to the script discards it.
+ *
+ * the next run parses the blocks that ran right away and leaves the ones that
+ * never ran lazy, sizes environments and instances for the variables they
+ * will get, and infers types up front when the hot operators were numeric.
+ *
+ * layout (big-endian):
+ *      magic "ZENP", version byte, CRC32 and length of the source,
+ *      statement count, then for every statement: position, executions,
+ *      site count, then for every binary operator: position, kinds byte, evaluations,
+ *      block count, then for every block: position, variables,
+ *      class count, then for every class: position, fields,
+ *      and the number of globals.
+ */
+class Profile {
+    private static final int MAGIC = 0x5A454E50; // "ZENP"
+    private static final byte VERSION = 2;
+
+    // the kinds of operand pairs a binary operator has seen, or-ed together.
+    static final int NUMBERS = 1;
+    static final int STRINGS = 2;
+    static final int OTHER = 4;
+
+    // type inference pays off when the numeric operators ran this many times each on average.
+    private static final long HOT = 16;
+
+    // blocks with at most this many variables fit in a default HashMap.
+    private static final int DEFAULT_VARIABLES = 12;
+
+    static class Site {
+        int kinds = 0;
+        long evaluations = 0;
+    }
+
+    // recorded by node, see executed(), operands(), environment() and defined().
+    private final Map<Stmt, long[]> executions = new HashMap<>();
+    private final Map<Expr.Binary, Site> operands = new HashMap<>();
+    private final Map<Stmt.Block, Integer> environments = new HashMap<>();
+    private final Map<Stmt.Class, ZenClass> classes = new HashMap<>();
+
+    // by position, read from a file or collected from the nodes before writing one.
+    // only statements that ran are kept, in source order.
+    private final TreeMap<Integer, Long> statements = new TreeMap<>();
+    private final Map<Integer, Site> sites = new HashMap<>();
+    private final Map<Integer, Integer> variables = new HashMap<>();
+    private final Map<Integer, Integer> fields = new HashMap<>();
+    private int globals = 0;
+
+    void executed(Stmt stmt) {
+        long[] count = executions.get(stmt);
+        if (count == null) {
+            count = new long[1];
+            executions.put(stmt, count);
+        }
+        count[0]++;
+    }
+
+    void operands(Expr.Binary expr, Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) {
+            operands(expr, NUMBERS);
+        } else if (left instanceof String && right instanceof String) {
+            operands(expr, STRINGS);
+        } else {
+            operands(expr, OTHER);
+        }
+    }
+
+    void operands(Expr.Binary expr, int kinds) {
+        Site site = operands.get(expr);
+        if (site == null) {
+            site = new Site();
+            operands.put(expr, site);
+        }
+        site.kinds |= kinds;
+        site.evaluations++;
+    }
+
+    void environment(Stmt.Block block, int size) {
+        Integer most = environments.get(block);
+        if (most == null || size > most)
+            environments.put(block, size);
+    }
+
+    void defined(Stmt.Class stmt, ZenClass klass) {
+        classes.put(stmt, klass);
+    }
+
+    // whether a statement between the two positions ran.
+    boolean ran(int from, int to) {
+        Integer next = statements.higherKey(from);
+        return next != null && next < to;
+    }
+
+    // whether the numeric operators ran often enough for TypeInference to pay off.
+    boolean hotNumbers() {
+        long numeric = 0;
+        for (Site site : sites.values()) {
+            if (site.kinds == NUMBERS)
+                numeric += site.evaluations;
+        }
+        return !sites.isEmpty() && numeric >= HOT * sites.size();
+    }
+
+    // how many variables the block defined, 0 if it fits in a default environment.
+    int variables(Stmt.Block block) {
+        if (variables.isEmpty())
+            return 0;
+        Integer count = variables.get(position(block));
+        return count == null ? 0 : count;
+    }
+
+    int fields(Stmt.Class stmt) {
+        Integer count = fields.get(stmt.name.offset);
+        return count == null ? 0 : count;
+    }
+
+    int globals() {
+        return globals;
+    }
+
+    // null if there is no profile, only one of another version of the source,
+    // or a file that is not a profile or was cut short: a profile is only a
+    // hint, a run without one is merely slower.
+    static Profile read(Path path, String source) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION)
+                return null;
+            if (in.readLong() != checksum(source) || in.readInt() != source.length())
+                return null;
+
+            Profile profile = new Profile();
+            for (int i = in.readInt(); i > 0; i--) {
+                profile.statements.put(in.readInt(), in.readLong());
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                Site site = new Site();
+                int position = in.readInt();
+                site.kinds = in.readByte();
+                site.evaluations = in.readLong();
+                profile.sites.put(position, site);
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                profile.variables.put(in.readInt(), in.readInt());
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                profile.fields.put(in.readInt(), in.readInt());
+            }
+            profile.globals = in.readInt();
+            return profile;
+        } catch (NoSuchFileException error) {
+            return null;
+        } catch (EOFException error) {
+            return null;
+        }
+    }
+
+    // only the nodes of the script itself are written, not those of its modules.
+    void write(Path path, String source, List<Stmt> script, Environment environment)
+            throws IOException {
+        collect(script);
+        globals = environment.values().size();
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(checksum(source));
+            out.writeInt(source.length());
+
+            out.writeInt(statements.size());
+            for (Map.Entry<Integer, Long> entry : statements.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.writeInt(sites.size());
+            for (Map.Entry<Integer, Site> entry : sites.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeByte(entry.getValue().kinds);
+                out.writeLong(entry.getValue().evaluations);
+            }
+            out.writeInt(variables.size());
+            for (Map.Entry<Integer, Integer> entry : variables.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+            out.writeInt(fields.size());
+            for (Map.Entry<Integer, Integer> entry : fields.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+            out.writeInt(globals);
+        }
+    }
+
+    private static long checksum(String source) {
+        CRC32 crc = new CRC32();
+        crc.update(source.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    // blocks that were never parsed never ran either.
+    private void collect(List<Stmt> statements) {
+        if (!Parser.isParsed(statements))
+            return;
+
+        for (Stmt statement : statements) {
+            collect(statement);
+        }
+    }
+
+    private void collect(Stmt stmt) {
+        long[] count = executions.get(stmt);
+        int position = position(stmt);
+        if (count != null && position >= 0)
+            statements.put(position, count[0]);
+
+        if (stmt instanceof Stmt.Block) {
+            Stmt.Block block = (Stmt.Block)stmt;
+            Integer size = environments.get(block);
+            if (size != null && size > DEFAULT_VARIABLES)
+                variables.put(position(block), size);
+            collect(block.statements);
+        } else if (stmt instanceof Stmt.Class) {
+            Stmt.Class klass = (Stmt.Class)stmt;
+            ZenClass defined = classes.get(klass);
+            if (defined != null && defined.capacity() > 0)
+                fields.put(klass.name.offset, defined.capacity());
+            for (Stmt.Function method : klass.methods) {
+                collect(method.body);
+            }
+        } else if (stmt instanceof Stmt.Expression) {
+            collect(((Stmt.Expression)stmt).expression);
+        } else if (stmt instanceof Stmt.Function) {
+            collect(((Stmt.Function)stmt).body);
+        } else if (stmt instanceof Stmt.Print) {
+            collect(((Stmt.Print)stmt).expression);
+        } else if (stmt instanceof Stmt.Return) {
+            collect(((Stmt.Return)stmt).value);
+        } else if (stmt instanceof Stmt.Var) {
+            collect(((Stmt.Var)stmt).initializer);
+        } else if (stmt instanceof Stmt.While) {
+            Stmt.While loop = (Stmt.While)stmt;
+            collect(loop.condition);
+            collect(loop.body);
+            collect(loop.increment);
+        }
+    }
+
+    private void collect(Expr expr) {
+        if (expr instanceof Expr.Assign) {
+            collect(((Expr.Assign)expr).value);
+        } else if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)expr;
+            Site site = operands.get(binary);
+            if (site != null)
+                sites.put(binary.operator.offset, site);
+            collect(binary.left);
+            collect(binary.right);
+        } else if (expr instanceof Expr.Call) {
+            Expr.Call call = (Expr.Call)expr;
+            collect(call.callee);
+            for (Expr argument : call.arguments) {
+                collect(argument);
+            }
+        } else if (expr instanceof Expr.Get) {
+            collect(((Expr.Get)expr).object);
+        } else if (expr instanceof Expr.Grouping) {
+            collect(((Expr.Grouping)expr).expression);
+        } else if (expr instanceof Expr.Set) {
+            collect(((Expr.Set)expr).object);
+            collect(((Expr.Set)expr).value);
+        } else if (expr instanceof Expr.Unary) {
+            collect(((Expr.Unary)expr).right);
+        }
+    }
+
+    // the offset of a token the statement holds, -1 for blocks.
+    private static int position(Stmt stmt) {
+        if (stmt instanceof Stmt.Class) return ((Stmt.Class)stmt).name.offset;
+        if (stmt instanceof Stmt.Expression) return ((Stmt.Expression)stmt).semicolon.offset;
+        if (stmt instanceof Stmt.Function) return ((Stmt.Function)stmt).name.offset;
+        if (stmt instanceof Stmt.Import) return ((Stmt.Import)stmt).keyword.offset;
+        if (stmt instanceof Stmt.Print) return ((Stmt.Print)stmt).keyword.offset;
+        if (stmt instanceof Stmt.Return) return ((Stmt.Return)stmt).keyword.offset;
+        if (stmt instanceof Stmt.Var) return ((Stmt.Var)stmt).name.offset;
+        if (stmt instanceof Stmt.While) return ((Stmt.While)stmt).keyword.offset;
+        return -1;
+    }
+
+    // a block goes by the position of its first statement that has one.
+    private static int position(Stmt.Block block) {
+        for (Stmt statement : block.statements) {
+            int position = statement instanceof Stmt.Block
+                ? position((Stmt.Block)statement) : position(statement);
+            if (position >= 0)
+                return position;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,313 @@
+package com.interpreter.zen;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * lays out the frames of functions, the first time their declaration runs.
+ *
+ * the parameters and the variables declared anywhere in a function body get
+ * a slot each in one Object[] frame, allocated at its full size by the call,
+ * instead of an Environment with a map for the body and every block in it.
+ * blocks that cannot run at the same time share slots.
+ * every use of a name in the body is bound to its declaration once: a slot of
+ * the function's own frame, or a variable of an enclosing function, which the
+ * closure captures when it is created.
+ *
+ * a captured variable lives in a Cell in its slot, a new one every time its
+ * declaration runs, so each closure keeps the variables of the block run it
+ * was created in. names that are not declared in any enclosing function are
+ * not resolved, they are looked up by name in the environment the function
+ * was declared in, like outside of functions.
+ *
+ * methods have one more slot after their parameters, for this, which their
+ * nested functions capture like any other variable. super is looked up by
+ * name, in the environment the class gives its methods.
+ *
+ * what the body binds is kept in the layout, not in the resolver, so that
+ * a function declared by one interpreter can be called by another one
+ * sharing its globals, which has never resolved the body itself.
+ */
+class Resolver {
+    static class Local {
+        // slot in the frame of the function the variable is declared in.
+        final int index;
+
+        // the statement that declares it in its scope, null for parameters.
+        // declaring the name again in the same scope assigns to the variable instead.
+        final Stmt declaration;
+
+        // set when a nested function uses the variable, whose slot then holds a Cell.
+        boolean captured = false;
+
+        Local(int index, Stmt declaration) {
+            this.index = index;
+            this.declaration = declaration;
+        }
+    }
+
+    // where a use of a name finds its variable.
+    static class Binding {
+        // declared in the function the use is in, null for a captured variable.
+        final Local local;
+
+        // the position of a captured variable in the closure's cells.
+        final int capture;
+
+        Binding(Local local, int capture) {
+            this.local = local;
+            this.capture = capture;
+        }
+    }
+
+    static class Layout {
+        // slots the frame needs, at least one per parameter.
+        final int frameSize;
+
+        // the slot of this in methods, -1 in functions.
+        final int thisSlot;
+
+        // slots of the parameters and this that are captured, and so boxed in a Cell by the call.
+        final int[] capturedParams;
+
+        // where each of the closure's cells comes from, as seen from the enclosing function.
+        final Binding[] captures;
+
+        // the declarations and uses of names in the body, and the layouts of the
+        // functions and methods declared in it, outside of their own bodies.
+        private final Map<Stmt, Local> locals;
+        private final Map<Expr, Binding> bindings;
+        private final Map<Stmt.Function, Layout> functions;
+
+        Layout(int frameSize, int thisSlot, int[] capturedParams, Binding[] captures,
+               Map<Stmt, Local> locals, Map<Expr, Binding> bindings,
+               Map<Stmt.Function, Layout> functions) {
+            this.frameSize = frameSize;
+            this.thisSlot = thisSlot;
+            this.capturedParams = capturedParams;
+            this.captures = captures;
+            this.locals = locals;
+            this.bindings = bindings;
+            this.functions = functions;
+        }
+
+        // the variable a Stmt.Var, Stmt.Function or Stmt.Class in the body declares.
+        Local local(Stmt declaration) {
+            return locals.get(declaration);
+        }
+
+        // the variable an Expr.Variable, Expr.Assign or Expr.This in the body uses,
+        // or the this of an Expr.Super; null if it is looked up by name.
+        Binding binding(Expr use) {
+            return bindings.get(use);
+        }
+
+        // the layout of a function or method declared in the body.
+        Layout layout(Stmt.Function nested) {
+            return functions.get(nested);
+        }
+    }
+
+    // a function being resolved.
+    private static class Function {
+        final Function enclosing;
+        final List<Map<String, Local>> scopes = new ArrayList<>();
+        final List<Local> params = new ArrayList<>();
+
+        // the binding of every variable used or declared in the function, own or captured.
+        final Map<Local, Binding> bindings = new HashMap<>();
+        final List<Binding> captures = new ArrayList<>();
+
+        // what becomes the layout's, see Layout.
+        final Map<Stmt, Local> locals = new HashMap<>();
+        final Map<Expr, Binding> uses = new HashMap<>();
+        final Map<Stmt.Function, Layout> functions = new HashMap<>();
+
+        int size = 0;
+        int frameSize = 0;
+
+        Function(Function enclosing) {
+            this.enclosing = enclosing;
+        }
+    }
+
+    // functions and methods declared outside of functions; the layouts of the
+    // ones nested in them are found through their enclosing layout.
+    private final Map<Stmt.Function, Layout> layouts = new HashMap<>();
+
+    // the layout of a function, resolving it and the functions nested in it if needed.
+    Layout layout(Stmt.Function stmt) {
+        Layout layout = layouts.get(stmt);
+        if (layout == null) {
+            layout = resolve(null, stmt, false);
+            layouts.put(stmt, layout);
+        }
+
+        return layout;
+    }
+
+    // the same for a method of a class.
+    Layout layout(Stmt.Class klass, Stmt.Function method) {
+        if (!layouts.containsKey(method)) {
+            for (Stmt.Function each : klass.methods) {
+                layouts.put(each, resolve(null, each, true));
+            }
+        }
+
+        return layouts.get(method);
+    }
+
+    private Layout resolve(Function enclosing, Stmt.Function stmt, boolean method) {
+        Function function = new Function(enclosing);
+        function.scopes.add(new HashMap<>());
+        for (Token param : stmt.params) {
+            function.params.add(declare(function, param.lexeme, null));
+        }
+
+        int thisSlot = -1;
+        if (method) {
+            Local self = declare(function, "this", null);
+            function.params.add(self);
+            thisSlot = self.index;
+        }
+
+        for (Stmt statement : stmt.body) {
+            resolve(function, statement);
+        }
+
+        int captured = 0;
+        for (Local param : function.params) {
+            if (param.captured) captured++;
+        }
+        int[] capturedParams = new int[captured];
+        captured = 0;
+        for (Local param : function.params) {
+            if (param.captured) capturedParams[captured++] = param.index;
+        }
+
+        return new Layout(function.frameSize, thisSlot, capturedParams,
+            function.captures.toArray(new Binding[0]),
+            function.locals, function.uses, function.functions);
+    }
+
+    private void resolve(Function function, Stmt stmt) {
+        if (stmt instanceof Stmt.Block) {
+            int size = function.size;
+            function.scopes.add(new HashMap<>());
+            for (Stmt statement : ((Stmt.Block)stmt).statements) {
+                resolve(function, statement);
+            }
+            function.scopes.remove(function.scopes.size() - 1);
+            function.size = size;
+        } else if (stmt instanceof Stmt.Var) {
+            // the Interpreter defines the name after evaluating the initializer.
+            Stmt.Var var = (Stmt.Var)stmt;
+            if (var.initializer != null)
+                resolve(function, var.initializer);
+            function.locals.put(var, declare(function, var.name.lexeme, var));
+        } else if (stmt instanceof Stmt.Function) {
+            // declared first, so that the function can call itself.
+            Stmt.Function declaration = (Stmt.Function)stmt;
+            function.locals.put(declaration, declare(function, declaration.name.lexeme, declaration));
+            function.functions.put(declaration, resolve(function, declaration, false));
+        } else if (stmt instanceof Stmt.Class) {
+            // the superclass is evaluated before the name is declared.
+            Stmt.Class klass = (Stmt.Class)stmt;
+            if (klass.superclass != null)
+                resolve(function, klass.superclass);
+            function.locals.put(klass, declare(function, klass.name.lexeme, klass));
+            for (Stmt.Function method : klass.methods) {
+                function.functions.put(method, resolve(function, method, true));
+            }
+        } else if (stmt instanceof Stmt.Expression) {
+            resolve(function, ((Stmt.Expression)stmt).expression);
+        } else if (stmt instanceof Stmt.Print) {
+            resolve(function, ((Stmt.Print)stmt).expression);
+        } else if (stmt instanceof Stmt.Return) {
+            Stmt.Return ret = (Stmt.Return)stmt;
+            if (ret.value != null)
+                resolve(function, ret.value);
+        } else if (stmt instanceof Stmt.While) {
+            Stmt.While loop = (Stmt.While)stmt;
+            resolve(function, loop.condition);
+            resolve(function, loop.body);
+            if (loop.increment != null)
+                resolve(function, loop.increment);
+        }
+
+        // imports are only allowed at the top level.
+    }
+
+    private void resolve(Function function, Expr expr) {
+        if (expr instanceof Expr.Assign) {
+            Expr.Assign assign = (Expr.Assign)expr;
+            resolve(function, assign.value);
+            bind(function, assign, assign.name.lexeme);
+        } else if (expr instanceof Expr.Binary) {
+            resolve(function, ((Expr.Binary)expr).left);
+            resolve(function, ((Expr.Binary)expr).right);
+        } else if (expr instanceof Expr.Call) {
+            Expr.Call call = (Expr.Call)expr;
+            resolve(function, call.callee);
+            for (Expr argument : call.arguments) {
+                resolve(function, argument);
+            }
+        } else if (expr instanceof Expr.Get) {
+            resolve(function, ((Expr.Get)expr).object);
+        } else if (expr instanceof Expr.Grouping) {
+            resolve(function, ((Expr.Grouping)expr).expression);
+        } else if (expr instanceof Expr.Set) {
+            Expr.Set set = (Expr.Set)expr;
+            resolve(function, set.object);
+            resolve(function, set.value);
+        } else if (expr instanceof Expr.Super || expr instanceof Expr.This) {
+            bind(function, expr, "this");
+        } else if (expr instanceof Expr.Unary) {
+            resolve(function, ((Expr.Unary)expr).right);
+        } else if (expr instanceof Expr.Variable) {
+            bind(function, expr, ((Expr.Variable)expr).name.lexeme);
+        }
+    }
+
+    private Local declare(Function function, String name, Stmt declaration) {
+        Map<String, Local> scope = function.scopes.get(function.scopes.size() - 1);
+        Local local = scope.get(name);
+        if (local != null)
+            return local;
+
+        local = new Local(function.size++, declaration);
+        function.frameSize = Math.max(function.frameSize, function.size);
+        scope.put(name, local);
+        function.bindings.put(local, new Binding(local, -1));
+        return local;
+    }
+
+    private void bind(Function function, Expr use, String name) {
+        for (Function owner = function; owner != null; owner = owner.enclosing) {
+            for (int i = owner.scopes.size() - 1; i >= 0; i--) {
+                Local local = owner.scopes.get(i).get(name);
+                if (local != null) {
+                    function.uses.put(use, binding(function, local));
+                    return;
+                }
+            }
+        }
+    }
+
+    // the binding of a variable in a function, capturing it through every
+    // function between the one it is declared in and this one.
+    private Binding binding(Function function, Local local) {
+        Binding binding = function.bindings.get(local);
+        if (binding != null)
+            return binding;
+
+        Binding source = binding(function.enclosing, local);
+        local.captured = true;
+        binding = new Binding(null, function.captures.size());
+        function.captures.add(source);
+        function.bindings.put(local, binding);
+        return binding;
+    }
+}
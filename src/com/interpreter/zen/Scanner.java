@@ -4,6 +4,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /* static imports:
    allows us to use the static members from a class
@@ -16,9 +18,34 @@ class Scanner {
     private final List<Token> tokens = new ArrayList<>();
 
     // keeping tack of where the scanner is in the src code.
+    // a chunk scanner only covers source[start, end).
     private int start = 0;
     private int current = 0;
     private int line = 1;
+    private final int end;
+
+    // chunk scanners run concurrently, so their errors are held back
+    // and reported in source order once every chunk is done.
+    private final List<ScanError> errors;
+
+    static class ScanError {
+        final int line;
+        final String message;
+
+        ScanError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+    }
+
+    // one copy of every string literal and name, so that equal ones are
+    // the same object at runtime and compare by reference.
+    // chunks keep their own table, so a literal repeated in different chunks is
+    // interned once per chunk and its copies compare by content.
+    private final Map<String, String> interned = new HashMap<>();
+
+    // sources are only split into chunks of at least this many chars.
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
 
     // mapping a specific token type to each lexeme identified.
     private static final Map<String, TokenType> keywords;
@@ -31,6 +58,7 @@ class Scanner {
         keywords.put("for", FOR);
         keywords.put("fun", FUN);
         keywords.put("if", IF);
+        keywords.put("import", IMPORT);
         keywords.put("none", NONE);
         keywords.put("or", OR);
         keywords.put("print", PRINT);
@@ -49,6 +77,17 @@ class Scanner {
      */
     Scanner(String source) {
         this.source = source;
+        this.end = source.length();
+        this.errors = null;
+    }
+
+    private Scanner(String source, int start, int end, int line) {
+        this.source = source;
+        this.start = start;
+        this.current = start;
+        this.end = end;
+        this.line = line;
+        this.errors = new ArrayList<>();
     }
 
     /*
@@ -57,15 +96,128 @@ class Scanner {
      * then it appends one final EOF token at the end.
      */
     List<Token> scanTokens() {
+        scanChunk();
+
+        tokens.add(new Token(EOF, "", null, line, current));
+        return tokens;
+    }
+
+    private void scanChunk() {
         while (!isAtEnd()) {
             start = current;
             scanToken();
         }
+    }
 
-        tokens.add(new Token(EOF, "", null, line));
+    /*
+     * scans one piece of a source read in pieces by TokenStream,
+     * the piece starts on the given line and ends at a newline outside a literal.
+     * its errors are held back like a chunk's, see errors().
+     */
+    static Scanner piece(String text, int line) {
+        Scanner piece = new Scanner(text, 0, text.length(), line);
+        piece.scanChunk();
+        return piece;
+    }
+
+    List<Token> tokens() {
         return tokens;
     }
 
+    List<ScanError> errors() {
+        return errors;
+    }
+
+    int line() {
+        return line;
+    }
+
+    /*
+     * scans source[start, end) only, for Watch, which re-scans edited regions.
+     * returns null if the region has a scan error, without reporting it,
+     * the caller then scans the whole source to report errors as usual.
+     */
+    static List<Token> scanRegion(String source, int start, int end, int line) {
+        Scanner region = new Scanner(source, start, end, line);
+        region.scanChunk();
+        if (!region.errors.isEmpty())
+            return null;
+
+        region.tokens.add(new Token(EOF, "", null, region.line, end));
+        return region.tokens;
+    }
+
+    /*
+     * splits the source into chunks at newlines outside of string literals,
+     * scans the chunks on the pool and stitches their tokens back together.
+     * the tokens and errors are identical to those of scanTokens().
+     */
+    static List<Token> scanTokensParallel(String source, ForkJoinPool pool) {
+        int chunkCount = Math.min(pool.getParallelism(), source.length() / MIN_CHUNK_SIZE);
+        if (chunkCount < 2)
+            return new Scanner(source).scanTokens();
+
+        List<Scanner> chunks = split(source, source.length() / chunkCount);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Scanner chunk : chunks) {
+            tasks.add(pool.submit(chunk::scanChunk));
+        }
+
+        int size = 1;
+        for (int i = 0; i < tasks.size(); i++) {
+            tasks.get(i).join();
+            size += chunks.get(i).tokens.size();
+        }
+
+        List<Token> tokens = new ArrayList<>(size);
+        for (Scanner chunk : chunks) {
+            tokens.addAll(chunk.tokens);
+            for (ScanError error : chunk.errors) {
+                Zen.error(error.line, error.message);
+            }
+        }
+
+        Scanner last = chunks.get(chunks.size() - 1);
+        tokens.add(new Token(EOF, "", null, last.line, source.length()));
+        return tokens;
+    }
+
+    /*
+     * pre-pass that only follows quotes, comments and newlines.
+     * a comment always ends at a newline, so a newline outside a string
+     * is a safe place to end a chunk, the next one starts on a fresh line.
+     */
+    private static List<Scanner> split(String source, int chunkSize) {
+        List<Scanner> chunks = new ArrayList<>();
+        int length = source.length();
+        int chunkStart = 0;
+        int chunkLine = 1;
+        int line = 1;
+        boolean inString = false;
+
+        for (int i = 0; i < length; i++) {
+            char c = source.charAt(i);
+            if (c == '\n') {
+                line++;
+                if (!inString && i + 1 - chunkStart >= chunkSize && i + 1 < length) {
+                    chunks.add(new Scanner(source, chunkStart, i + 1, chunkLine));
+                    chunkStart = i + 1;
+                    chunkLine = line;
+                }
+            } else if (c == '"') {
+                inString = !inString;
+            } else if (c == '/' && !inString &&
+                       i + 1 < length && source.charAt(i + 1) == '/') {
+                // stop right before the newline, so that it is counted above.
+                int newline = source.indexOf('\n', i);
+                i = (newline < 0 ? length : newline) - 1;
+            }
+        }
+
+        chunks.add(new Scanner(source, chunkStart, length, chunkLine));
+        return chunks;
+    }
+
     private void scanToken() {
         char c = advance();
         switch (c) {
@@ -117,17 +269,18 @@ class Scanner {
                 // if "//", then it's a comment
                 // a comment goes until EOL.
                 if (match('/')) {
-                    while (peek() != '\n' && !isAtEnd())
-                        advance();
+                    current = find('\n');
                 } else {
                     addToken(SLASH);
                 }
                 break;
 
-            // ignore whitespace.
+            // ignore whitespace, indentation is skipped as one run.
             case ' ':
             case '\r':
             case '\t':
+                while (current < end && isBlank(source.charAt(current)))
+                    current++;
                 break;
 
             case '\n':
@@ -144,14 +297,22 @@ class Scanner {
                 } else if (isAlpha(c)) {
                     identifier();
                 } else {
-                    Zen.error(line, "Unexpected character.");
+                    error(line, "Unexpected character.");
                 }
                 break;
         }
     }
 
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= end;
+    }
+
+    private void error(int line, String message) {
+        if (errors == null) {
+            Zen.error(line, message);
+        } else {
+            errors.add(new ScanError(line, message));
+        }
     }
 
     // returns the *next* character in the src string.
@@ -166,21 +327,20 @@ class Scanner {
     // extract the lexeme and add it as a token.
     private void addToken(TokenType type, Object literal) {
         String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+        tokens.add(new Token(type, text, literal, line, start));
     }
 
     private void string() {
         // identify the end of the string literal,
-        // if there's a newline, then increment line counter
-        // and advance to next character.
-        while (peek() != '"' && !isAtEnd()) {
-            if (peek() != '\n')
-                line++;
-            advance();
+        // and count the newlines inside of it, not past it.
+        int close = find('"');
+        for (int i = current; i < close; i++) {
+            if (source.charAt(i) == '\n') line++;
         }
+        current = close;
 
         if (isAtEnd()) {
-            Zen.error(line, "Unterminated string literal.");
+            error(line, "Unterminated string literal.");
             return;
         }
 
@@ -188,10 +348,15 @@ class Scanner {
         advance();
 
         // trim the quotes, and add the token with literal.
-        String value = source.substring(start + 1, current - 1);
+        String value = intern(source.substring(start + 1, current - 1));
         addToken(STRING, value);
     }
 
+    private String intern(String text) {
+        String canonical = interned.putIfAbsent(text, text);
+        return canonical == null ? text : canonical;
+    }
+
     private void number() {
         // keep advancing until the lookahead character is a digit.
         while (isDigit(peek()))
@@ -217,12 +382,13 @@ class Scanner {
         while (isAlphaNumeric(peek()))
             advance();
 
-        String lexeme = source.substring(start, current);
+        // names are interned too, they then match the Environment's keys by reference.
+        String lexeme = intern(source.substring(start, current));
         TokenType type = keywords.get(lexeme);
         if (type == null)
             type = IDENTIFIER;
 
-        addToken(type);
+        tokens.add(new Token(type, lexeme, null, line, start));
     }
 
     private boolean match(char expectedNextChar) {
@@ -235,6 +401,16 @@ class Scanner {
         return true;
     }
 
+    /*
+     * index of the next c at or after current, or end if there is none.
+     * String.indexOf() is intrinsified by the JIT into vector compares,
+     * so long comments and string literals are skipped many chars at a time.
+     */
+    private int find(char c) {
+        int index = source.indexOf(c, current);
+        return index < 0 || index > end ? end : index;
+    }
+
     // this is a lookahead method, it doesn't consume chars unlike advance()
     private char peek() {
         if (isAtEnd())
@@ -244,7 +420,7 @@ class Scanner {
 
     // scanner looksahead at most for two characters.
     private char peekNext() {
-        if (current + 1 >= source.length())
+        if (current + 1 >= end)
             return '\0';
         return source.charAt(current + 1);
     }
@@ -254,6 +430,10 @@ class Scanner {
         return c >= '0' && c <= '9';
     }
 
+    private boolean isBlank(char c) {
+        return c == ' ' || c == '\r' || c == '\t';
+    }
+
     private boolean isAlpha(char c) {
         return (c >= 'a' && c <= 'z') ||
                 (c >= 'A' && c <= 'Z') ||
@@ -0,0 +1,96 @@
+package com.interpreter.zen;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * the hidden class of an instance: which fields it has and in which slot
+ * of its field array each one is.
+ *
+ * every class has a root shape without fields, and adding a field to an
+ * instance moves it to the child shape for that name, created once and then
+ * shared by every instance that gets the same fields in the same order.
+ * since a shape belongs to one class, it also determines the methods, so
+ * what a property name means is the same for every instance of a shape and
+ * can be cached by the shape alone, see InlineCache.
+ */
+final class Shape {
+    final ZenClass owner;
+
+    // number of fields, the slots are 0 to size - 1.
+    final int size;
+
+    private final Map<String, Integer> slots;
+
+    // shapes can be shared by interpreters on other threads, like their class.
+    private final Map<String, Shape> transitions = new ConcurrentHashMap<>();
+
+    // what every name looked up or stored so far means for this shape,
+    // shared by all the sites that are megamorphic.
+    private final Map<String, InlineCache.Entry> gets = new ConcurrentHashMap<>();
+    private final Map<String, InlineCache.Entry> sets = new ConcurrentHashMap<>();
+
+    Shape(ZenClass owner) {
+        this(owner, new HashMap<>());
+    }
+
+    private Shape(ZenClass owner, Map<String, Integer> slots) {
+        this.owner = owner;
+        this.slots = slots;
+        this.size = slots.size();
+    }
+
+    // the slot of a field, -1 if instances of this shape do not have it.
+    int slot(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    // the shape with one more field.
+    Shape with(String name) {
+        return transitions.computeIfAbsent(name, added -> {
+            Map<String, Integer> grown = new HashMap<>(slots);
+            grown.put(added, size);
+            return new Shape(owner, grown);
+        });
+    }
+
+    // reading a property: a field, or else a method of the class, null if there is neither.
+    InlineCache.Entry get(String name) {
+        InlineCache.Entry entry = gets.get(name);
+        if (entry != null)
+            return entry;
+
+        int slot = slot(name);
+        if (slot >= 0) {
+            entry = new InlineCache.Entry(this, slot, null, null);
+        } else {
+            ZenFunction method = owner.findMethod(name);
+            if (method == null)
+                return null;
+            entry = new InlineCache.Entry(this, -1, method, null);
+        }
+
+        gets.put(name, entry);
+        return entry;
+    }
+
+    // storing a field, which moves the instance to a new shape if it does not have it yet.
+    InlineCache.Entry set(String name) {
+        InlineCache.Entry entry = sets.get(name);
+        if (entry != null)
+            return entry;
+
+        int slot = slot(name);
+        if (slot >= 0) {
+            entry = new InlineCache.Entry(this, slot, null, null);
+        } else {
+            Shape transition = with(name);
+            entry = new InlineCache.Entry(this, transition.slot(name), null, transition);
+        }
+
+        sets.put(name, entry);
+        return entry;
+    }
+}
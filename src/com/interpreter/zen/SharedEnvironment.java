@@ -0,0 +1,92 @@
+package com.interpreter.zen;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * global environment that several interpreters, one per thread, share.
+ *
+ * every variable has a slot of its own, found through a ConcurrentHashMap
+ * whose reads never lock. reading or assigning a variable only touches its
+ * slot, a volatile field, so threads using different variables never wait
+ * on each other and threads using the same one only race for its value.
+ * only defining a new name updates the map, which locks one bin of it.
+ *
+ * every read and write is atomic on its own, but `a = a + 1` is a read
+ * followed by a write, so concurrent updates of one variable can be lost.
+ * block environments are private to their interpreter and stay unsynchronized.
+ */
+class SharedEnvironment extends Environment {
+    private static class Slot {
+        // none is null, which ConcurrentHashMap cannot hold as a value.
+        volatile Object value;
+
+        Slot(Object value) {
+            this.value = value;
+        }
+    }
+
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+    @Override
+    Object get(Token name) {
+        Slot slot = slots.get(name.lexeme);
+        if (slot == null) {
+            throw new RuntimeError(
+                name,
+                "Undefined variable '" + name.lexeme + "'."
+            );
+        }
+
+        return slot.value;
+    }
+
+    @Override
+    void assign(Token name, Object value) {
+        Slot slot = slots.get(name.lexeme);
+        if (slot == null) {
+            throw new RuntimeError(
+                name,
+                "Undefined variable'" + name.lexeme + "'."
+            );
+        }
+
+        slot.value = value;
+    }
+
+    // redefining keeps the slot, so it never replaces a concurrent assignment's slot.
+    @Override
+    void define(String name, Object value) {
+        Slot slot = slots.get(name);
+        if (slot == null) {
+            slot = slots.putIfAbsent(name, new Slot(value));
+            if (slot == null) return;
+        }
+
+        slot.value = value;
+    }
+
+    // the slots are made one at a time as names are defined, so there is
+    // nothing to size up front, and the inherited map is never used.
+    @Override
+    void reserve(int variables) {
+    }
+
+    @Override
+    void clear() {
+        slots.clear();
+    }
+
+    // a copy, since the bindings may change while Snapshot reads them.
+    @Override
+    Map<String, Object> values() {
+        Map<String, Object> values = new HashMap<>();
+        for (Map.Entry<String, Slot> entry : slots.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().value);
+        }
+
+        return Collections.unmodifiableMap(values);
+    }
+}
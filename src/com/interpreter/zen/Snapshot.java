@@ -0,0 +1,119 @@
+package com.interpreter.zen;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * saves and restores the bindings of the global environment,
+ * so that a long initialisation script only has to be run once.
+ *
+ * layout (big-endian):
+ *      magic "ZENS", version byte, entry count,
+ *      then for every entry: name, tag byte, payload.
+ * strings are stored as a length followed by their UTF-8 bytes.
+ */
+class Snapshot {
+    private static final int MAGIC = 0x5A454E53; // "ZENS"
+    private static final byte VERSION = 1;
+
+    // one tag per runtime value type, booleans carry their value in the tag.
+    private static final byte NONE = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte NUMBER = 3;
+    private static final byte STRING = 4;
+
+    // functions, classes and instances are code or refer to it, they are left out.
+    static void write(Environment environment, Path path) throws IOException {
+        Map<String, Object> values = new HashMap<>(environment.values());
+        values.values().removeIf(value -> value instanceof ZenFunction ||
+            value instanceof ZenClass || value instanceof ZenInstance);
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(values.size());
+
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                writeString(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        }
+    }
+
+    /*
+     * the file is memory-mapped instead of read into the heap,
+     * so concurrent runs restoring the same snapshot share the page cache.
+     */
+    static void read(Path path, Environment environment) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+                throw new IOException("Invalid snapshot file '" + path + "'.");
+            }
+
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                String name = readString(buffer);
+                environment.define(name, readValue(buffer));
+            }
+        } catch (BufferUnderflowException error) {
+            throw new IOException("Truncated snapshot file '" + path + "'.");
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NONE);
+        } else if (value instanceof Boolean) {
+            out.writeByte((boolean)value ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            out.writeByte(NUMBER);
+            out.writeDouble((double)value);
+        } else {
+            out.writeByte(STRING);
+            writeString(out, (String)value);
+        }
+    }
+
+    private static Object readValue(ByteBuffer buffer) throws IOException {
+        byte tag = buffer.get();
+        switch (tag) {
+            case NONE: return null;
+            case FALSE: return false;
+            case TRUE: return true;
+            case NUMBER: return buffer.getDouble();
+            case STRING: return readString(buffer);
+            default:
+                throw new IOException("Unknown value tag " + tag + " in snapshot.");
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -5,9 +5,14 @@ import java.util.List;
 abstract class Stmt {
     interface Visitor<R> {
         R visitBlockStmt(Block stmt);
+        R visitClassStmt(Class stmt);
         R visitExpressionStmt(Expression stmt);
+        R visitFunctionStmt(Function stmt);
+        R visitImportStmt(Import stmt);
         R visitPrintStmt(Print stmt);
+        R visitReturnStmt(Return stmt);
         R visitVarStmt(Var stmt);
+        R visitWhileStmt(While stmt);
     }
     static class Block extends Stmt {
         Block(List<Stmt> statements) {
@@ -21,9 +26,26 @@ abstract class Stmt {
 
         final List<Stmt> statements;
     }
+    static class Class extends Stmt {
+        Class(Token name, Expr.Variable superclass, List<Stmt.Function> methods) {
+            this.name = name;
+            this.superclass = superclass;
+            this.methods = methods;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitClassStmt(this);
+        }
+
+        final Token name;
+        final Expr.Variable superclass;
+        final List<Stmt.Function> methods;
+    }
     static class Expression extends Stmt {
-        Expression(Expr expression) {
+        Expression(Expr expression, Token semicolon) {
             this.expression = expression;
+            this.semicolon = semicolon;
         }
 
         @Override
@@ -32,9 +54,41 @@ abstract class Stmt {
         }
 
         final Expr expression;
+        final Token semicolon;
+    }
+    static class Function extends Stmt {
+        Function(Token name, List<Token> params, List<Stmt> body) {
+            this.name = name;
+            this.params = params;
+            this.body = body;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitFunctionStmt(this);
+        }
+
+        final Token name;
+        final List<Token> params;
+        final List<Stmt> body;
+    }
+    static class Import extends Stmt {
+        Import(Token keyword, Token path) {
+            this.keyword = keyword;
+            this.path = path;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitImportStmt(this);
+        }
+
+        final Token keyword;
+        final Token path;
     }
     static class Print extends Stmt {
-        Print(Expr expression) {
+        Print(Token keyword, Expr expression) {
+            this.keyword = keyword;
             this.expression = expression;
         }
 
@@ -43,8 +97,23 @@ abstract class Stmt {
             return visitor.visitPrintStmt(this);
         }
 
+        final Token keyword;
         final Expr expression;
     }
+    static class Return extends Stmt {
+        Return(Token keyword, Expr value) {
+            this.keyword = keyword;
+            this.value = value;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitReturnStmt(this);
+        }
+
+        final Token keyword;
+        final Expr value;
+    }
     static class Var extends Stmt {
         Var(Token name, Expr initializer) {
             this.name = name;
@@ -59,6 +128,24 @@ abstract class Stmt {
         final Token name;
         final Expr initializer;
     }
+    static class While extends Stmt {
+        While(Token keyword, Expr condition, Stmt body, Expr increment) {
+            this.keyword = keyword;
+            this.condition = condition;
+            this.body = body;
+            this.increment = increment;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitWhileStmt(this);
+        }
+
+        final Token keyword;
+        final Expr condition;
+        final Stmt body;
+        final Expr increment;
+    }
 
     abstract <R> R accept(Visitor<R> visitor);
 }
@@ -0,0 +1,15 @@
+package com.interpreter.zen;
+
+import java.util.List;
+
+sealed interface StmtNode {
+    record Block(List<StmtNode> statements) implements StmtNode {}
+    record Class(Token name, ExprNode.Variable superclass, List<StmtNode.Function> methods) implements StmtNode {}
+    record Expression(ExprNode expression, Token semicolon) implements StmtNode {}
+    record Function(Token name, List<Token> params, List<StmtNode> body) implements StmtNode {}
+    record Import(Token keyword, Token path) implements StmtNode {}
+    record Print(Token keyword, ExprNode expression) implements StmtNode {}
+    record Return(Token keyword, ExprNode value) implements StmtNode {}
+    record Var(Token name, ExprNode initializer) implements StmtNode {}
+    record While(Token keyword, ExprNode condition, StmtNode body, ExprNode increment) implements StmtNode {}
+}
@@ -6,11 +6,16 @@ class Token {
     final Object literal;
     final int line;
 
-    Token(TokenType type, String lexeme, Object literal, int line) {
+    // index of the token's first char in the source.
+    // Watch moves it when it reuses the token's statement after an edit before it.
+    int offset;
+
+    Token(TokenType type, String lexeme, Object literal, int line, int offset) {
         this.type = type;
         this.lexeme = lexeme;
         this.literal = literal;
         this.line = line;
+        this.offset = offset;
     }
 
     public String toString() {
@@ -0,0 +1,151 @@
+package com.interpreter.zen;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.interpreter.zen.TokenType.EOF;
+
+/*
+ * the tokens of a source that is read a piece at a time, for --stream.
+ *
+ * a piece ends at a newline outside of string literals and comments, like
+ * the chunks of Scanner.split(), and is only read and scanned once the
+ * Parser asks for a token past the ones it already has.
+ * the tokens of statements that have run are released, so that only the
+ * statement being parsed and one piece of the source are held at a time.
+ */
+class TokenStream extends AbstractList<Token> {
+    // pieces end at the first safe newline after this many chars.
+    private static final int PIECE_SIZE = 1 << 16;
+
+    private final Reader reader;
+    private final char[] buffer = new char[PIECE_SIZE];
+    private boolean exhausted = false;
+
+    // text read but not scanned yet, and how much of it was checked for a newline to cut at.
+    private final StringBuilder pending = new StringBuilder();
+    private int examined = 0;
+    private boolean inString = false;
+    private boolean inComment = false;
+    private int line = 1;
+
+    // tokens from index base on, and the scan errors not reported yet.
+    private final List<Token> window = new ArrayList<>();
+    private int base = 0;
+    private boolean ended = false;
+    private final List<Scanner.ScanError> errors = new ArrayList<>();
+
+    TokenStream(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public Token get(int index) {
+        while (index - base >= window.size() && !ended) {
+            readPiece();
+        }
+
+        return window.get(index - base);
+    }
+
+    @Override
+    public int size() {
+        return base + window.size();
+    }
+
+    // drops the tokens before index, the Parser never looks back at them.
+    void release(int index) {
+        window.subList(0, index - base).clear();
+        base = index;
+    }
+
+    // reports the held back scan errors up to a line, in source order.
+    void reportErrors(int throughLine) {
+        int reported = 0;
+        while (reported < errors.size() && errors.get(reported).line <= throughLine) {
+            Scanner.ScanError error = errors.get(reported++);
+            Zen.error(error.line, error.message);
+        }
+
+        errors.subList(0, reported).clear();
+    }
+
+    private void readPiece() {
+        int cut = findCut();
+        while (cut < 0 && !exhausted) {
+            try {
+                int read = reader.read(buffer);
+                if (read < 0) {
+                    exhausted = true;
+                } else {
+                    pending.append(buffer, 0, read);
+                }
+            } catch (IOException error) {
+                throw new UncheckedIOException(error);
+            }
+            cut = findCut();
+        }
+
+        String text;
+        if (cut < 0) {
+            text = pending.toString();
+            pending.setLength(0);
+        } else {
+            text = pending.substring(0, cut);
+            pending.delete(0, cut);
+            examined -= cut;
+        }
+
+        if (!text.isEmpty()) {
+            Scanner piece = Scanner.piece(text, line);
+            window.addAll(piece.tokens());
+            errors.addAll(piece.errors());
+            line = piece.line();
+        }
+
+        if (cut < 0) {
+            window.add(new Token(EOF, "", null, line, 0));
+            ended = true;
+        }
+    }
+
+    // index just past a newline to end the piece at, or -1 if more text is needed.
+    private int findCut() {
+        int length = pending.length();
+        for (int i = examined; i < length; i++) {
+            char c = pending.charAt(i);
+            if (inString) {
+                if (c == '"') inString = false;
+                continue;
+            }
+            if (inComment) {
+                if (c != '\n') continue;
+                inComment = false;
+            }
+
+            if (c == '"') {
+                inString = true;
+            } else if (c == '/') {
+                // a '/' at the end of what was read may still start a comment.
+                if (i + 1 == length && !exhausted) {
+                    examined = i;
+                    return -1;
+                }
+                if (i + 1 < length && pending.charAt(i + 1) == '/') {
+                    inComment = true;
+                    i++;
+                }
+            } else if (c == '\n' && i + 1 >= PIECE_SIZE) {
+                examined = i + 1;
+                return i + 1;
+            }
+        }
+
+        examined = length;
+        return -1;
+    }
+}
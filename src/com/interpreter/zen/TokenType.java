@@ -15,7 +15,7 @@ enum TokenType {
     IDENTIFIER, STRING, NUMBER,
 
     // reserved keywords
-    AND, CLASS, ELSE, FALSE, FUN, FOR, IF, NONE, OR,
+    AND, CLASS, ELSE, FALSE, FUN, FOR, IF, IMPORT, NONE, OR,
     PRINT, RETURN, SUPER, THIS, TRUE, VAR, WHILE,
 
     EOF
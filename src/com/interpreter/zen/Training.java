@@ -0,0 +1,79 @@
+package com.interpreter.zen;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+ * the workload of --train: every .zen program in a directory, run once
+ * on every engine and once more in each of the front end modes, with
+ * the output discarded.
+ *
+ * on its own it does nothing useful. build.sh runs it in a JVM started with
+ * -XX:DumpLoadedClassList and dumps every class the runs loaded, the scanner,
+ * parser, node classes and engines, into a class-data-sharing archive. the zen
+ * launcher maps that archive into every later JVM, so those classes come
+ * parsed and verified instead of being loaded from the jar, which for small
+ * scripts takes longer than running them.
+ */
+class Training {
+    private static final String[] ENGINES = { "tree", "closure", "nanbox", "jit", "pattern" };
+
+    static void run(Path directory) throws IOException {
+        List<Path> programs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> path.toString().endsWith(".zen"))
+                 .sorted()
+                 .forEach(programs::add);
+        }
+
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        try {
+            System.setOut(discard);
+            System.setErr(discard);
+            for (Path program : programs) {
+                String source = new String(Files.readAllBytes(program), Charset.defaultCharset());
+                for (String engine : ENGINES) {
+                    Zen.engine = engine;
+                    run(source, program);
+                }
+                Zen.engine = "tree";
+
+                Zen.lazyParse = true;
+                run(source, program);
+                Zen.lazyParse = false;
+
+                Zen.parallelScan = Zen.parallelParse = true;
+                run(source, program);
+                Zen.parallelScan = Zen.parallelParse = false;
+
+                Zen.inferTypes = Zen.eliminateDeadStores = true;
+                run(source, program);
+                Zen.inferTypes = Zen.eliminateDeadStores = false;
+            }
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+
+        System.out.println("Trained on " + programs.size() + " programs.");
+    }
+
+    // in a fresh interpreter, like CorpusRunner.
+    private static void run(String source, Path program) {
+        Zen.hadError = false;
+        Zen.hadRuntimeError = false;
+        Interpreter interpreter = new Interpreter();
+        interpreter.setInferTypes(Zen.inferTypes);
+        interpreter.setScript(program);
+        Zen.run(source, interpreter);
+    }
+}
@@ -0,0 +1,273 @@
+package com.interpreter.zen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * flow-insensitive type inference over the variables declared in blocks.
+ *
+ * every use of a block variable is bound to its declaration, then
+ * a variable is proven numeric when each value ever stored in it,
+ * its initializer and every assignment, is statically a number.
+ * numeric variables can live in a primitive double[] frame per block
+ * instead of boxed in the Environment's map.
+ *
+ * globals are never resolved, they outlive a single run in the REPL.
+ * programs with constructs this pass does not know about are not analysed,
+ * analyze() then returns false and every variable keeps the general representation.
+ */
+class TypeInference {
+    // sentinel, unwinds the pass when it meets an unsupported construct.
+    private static class Unsupported extends RuntimeException {}
+
+    // what an expression is statically known to produce.
+    enum Kind { NUMBER, BOOLEAN, OBJECT }
+
+    static class Local {
+        boolean numeric = true;
+
+        // position in its block's double[] frame, numeric locals only.
+        int index = -1;
+
+        final List<Expr> stores = new ArrayList<>();
+
+        // uses at the same distance share one Slot.
+        private final List<Slot> slots = new ArrayList<>();
+
+        Slot at(int distance) {
+            while (slots.size() <= distance) {
+                slots.add(new Slot(this, slots.size()));
+            }
+
+            return slots.get(distance);
+        }
+    }
+
+    // a declaration or use of a local, distance counts the blocks in between.
+    static class Slot {
+        final Local local;
+        final int distance;
+
+        Slot(Local local, int distance) {
+            this.local = local;
+            this.distance = distance;
+        }
+    }
+
+    private static class Scope {
+        final Stmt.Block block;
+        final Map<String, Local> names = new HashMap<>();
+        final List<Local> locals = new ArrayList<>();
+
+        Scope(Stmt.Block block) {
+            this.block = block;
+        }
+    }
+
+    private final Map<Object, Slot> slots = new HashMap<>();
+    private final Map<Stmt.Block, Integer> frameSizes = new HashMap<>();
+    private final Set<Expr> numericOperands = Collections.newSetFromMap(new HashMap<>());
+    private final List<Scope> scopes = new ArrayList<>();
+    private final List<Scope> blocks = new ArrayList<>();
+    private final List<Expr> operators = new ArrayList<>();
+
+    boolean analyze(List<Stmt> statements) {
+        try {
+            for (Stmt statement : statements) {
+                resolve(statement);
+            }
+        } catch (Unsupported error) {
+            slots.clear();
+            return false;
+        }
+
+        infer();
+
+        for (Scope block : blocks) {
+            int size = 0;
+            for (Local local : block.locals) {
+                if (local.numeric) local.index = size++;
+            }
+            if (size > 0) frameSizes.put(block.block, size);
+        }
+
+        for (Expr operator : operators) {
+            if (operandsAreNumbers(operator)) numericOperands.add(operator);
+        }
+
+        return true;
+    }
+
+    // the local a Stmt.Var, Expr.Variable or Expr.Assign refers to, null for globals.
+    Local local(Object node) {
+        Slot slot = slots.get(node);
+        return slot == null ? null : slot.local;
+    }
+
+    // every declaration and use of a block variable, numeric or not.
+    Map<Object, Slot> slots() {
+        return slots;
+    }
+
+    // number of numeric locals declared directly in each block, if any.
+    Map<Stmt.Block, Integer> frameSizes() {
+        return frameSizes;
+    }
+
+    // binary and unary operators whose operands are statically numbers.
+    Set<Expr> numericOperands() {
+        return numericOperands;
+    }
+
+    Kind kindOf(Expr expr) {
+        if (expr instanceof Expr.Literal) {
+            Object value = ((Expr.Literal)expr).value;
+            if (value instanceof Double) return Kind.NUMBER;
+            if (value instanceof Boolean) return Kind.BOOLEAN;
+            return Kind.OBJECT;
+        }
+        if (expr instanceof Expr.Grouping) {
+            return kindOf(((Expr.Grouping)expr).expression);
+        }
+        if (expr instanceof Expr.Unary) {
+            return ((Expr.Unary)expr).operator.type == TokenType.MINUS
+                ? Kind.NUMBER : Kind.BOOLEAN;
+        }
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)expr;
+            switch (binary.operator.type) {
+                case MINUS:
+                case SLASH:
+                case STAR:
+                    return Kind.NUMBER;
+                case PLUS:
+                    return kindOf(binary.left) == Kind.NUMBER &&
+                           kindOf(binary.right) == Kind.NUMBER
+                        ? Kind.NUMBER : Kind.OBJECT;
+                default:
+                    return Kind.BOOLEAN;
+            }
+        }
+
+        // variables and assignments.
+        Local local = local(expr);
+        return local != null && local.numeric ? Kind.NUMBER : Kind.OBJECT;
+    }
+
+    private boolean operandsAreNumbers(Expr expr) {
+        if (expr instanceof Expr.Unary) {
+            return kindOf(((Expr.Unary)expr).right) == Kind.NUMBER;
+        }
+
+        Expr.Binary binary = (Expr.Binary)expr;
+        return kindOf(binary.left) == Kind.NUMBER && kindOf(binary.right) == Kind.NUMBER;
+    }
+
+    // a local stays numeric while all the values stored in it are numbers.
+    private void infer() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Scope block : blocks) {
+                for (Local local : block.locals) {
+                    if (!local.numeric) continue;
+                    for (Expr store : local.stores) {
+                        if (kindOf(store) != Kind.NUMBER) {
+                            local.numeric = false;
+                            changed = true;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void resolve(Stmt stmt) {
+        if (stmt instanceof Stmt.Block) {
+            Scope scope = new Scope((Stmt.Block)stmt);
+            scopes.add(scope);
+            blocks.add(scope);
+            for (Stmt statement : ((Stmt.Block)stmt).statements) {
+                resolve(statement);
+            }
+            scopes.remove(scopes.size() - 1);
+        } else if (stmt instanceof Stmt.Var) {
+            Stmt.Var var = (Stmt.Var)stmt;
+            if (var.initializer != null)
+                resolve(var.initializer);
+            if (scopes.isEmpty())
+                return;
+
+            // the Interpreter defines the name after evaluating the initializer.
+            Local local = new Local();
+            if (var.initializer == null) {
+                local.numeric = false;
+            } else {
+                local.stores.add(var.initializer);
+            }
+
+            Scope scope = scopes.get(scopes.size() - 1);
+            scope.names.put(var.name.lexeme, local);
+            scope.locals.add(local);
+            slots.put(var, local.at(0));
+        } else if (stmt instanceof Stmt.Expression) {
+            resolve(((Stmt.Expression)stmt).expression);
+        } else if (stmt instanceof Stmt.Print) {
+            resolve(((Stmt.Print)stmt).expression);
+        } else if (stmt instanceof Stmt.While) {
+            // stores are facts without an order here, so loops change nothing.
+            Stmt.While loop = (Stmt.While)stmt;
+            resolve(loop.condition);
+            resolve(loop.body);
+            if (loop.increment != null)
+                resolve(loop.increment);
+        } else if (stmt instanceof Stmt.Import) {
+            // modules only define globals, which are never resolved.
+            return;
+        } else {
+            throw new Unsupported();
+        }
+    }
+
+    private void resolve(Expr expr) {
+        if (expr instanceof Expr.Assign) {
+            Expr.Assign assign = (Expr.Assign)expr;
+            resolve(assign.value);
+            Slot slot = lookup(assign.name);
+            if (slot != null) {
+                slots.put(assign, slot);
+                slot.local.stores.add(assign.value);
+            }
+        } else if (expr instanceof Expr.Binary) {
+            resolve(((Expr.Binary)expr).left);
+            resolve(((Expr.Binary)expr).right);
+            operators.add(expr);
+        } else if (expr instanceof Expr.Grouping) {
+            resolve(((Expr.Grouping)expr).expression);
+        } else if (expr instanceof Expr.Unary) {
+            resolve(((Expr.Unary)expr).right);
+            if (((Expr.Unary)expr).operator.type == TokenType.MINUS)
+                operators.add(expr);
+        } else if (expr instanceof Expr.Variable) {
+            Slot slot = lookup(((Expr.Variable)expr).name);
+            if (slot != null)
+                slots.put(expr, slot);
+        } else if (!(expr instanceof Expr.Literal)) {
+            throw new Unsupported();
+        }
+    }
+
+    private Slot lookup(Token name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Local local = scopes.get(i).names.get(name.lexeme);
+            if (local != null) return local.at(scopes.size() - 1 - i);
+        }
+
+        return null;
+    }
+}
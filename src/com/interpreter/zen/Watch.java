@@ -0,0 +1,344 @@
+package com.interpreter.zen;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/*
+ * --watch: runs the script again, in a fresh interpreter, every time it is saved.
+ *
+ * the previous source is kept together with its top-level statements and
+ * where each of them starts. a new version is compared against it, and
+ * only the statements overlapping the edited text are scanned and parsed
+ * again, the others are reused as they are.
+ *
+ * the re-scanned region starts and ends with a statement at the start of
+ * a line, where no token, string or comment can carry over from the text
+ * around it. if the region does not scan and parse cleanly on its own,
+ * the whole source is parsed again so that errors are reported as usual.
+ * if the edit adds or removes lines, the statements after it would keep
+ * tokens with stale line numbers, so the region then runs to the end.
+ *
+ * the tokens of the statements after the edit are moved by the length it
+ * added, so that their offsets are those of the new source, and the inline
+ * caches of all reused statements are emptied, so that the new run does
+ * not find, or keep alive, the shapes of the classes of the previous one.
+ */
+class Watch {
+    private String source = null;
+
+    // the statements of the source, null while it has a syntax error.
+    private List<Stmt> statements = null;
+
+    // offset and line of the first token of every statement.
+    private int[] starts;
+    private int[] lines;
+
+    static void run(Path script) throws IOException {
+        Path file = script.toAbsolutePath();
+        Path directory = file.getParent();
+        Watch watch = new Watch();
+
+        try (WatchService service = directory.getFileSystem().newWatchService()) {
+            // editors often save by writing a new file and renaming it over the old one.
+            directory.register(service, ENTRY_CREATE, ENTRY_MODIFY);
+
+            for (;;) {
+                String next;
+                try {
+                    next = new String(Files.readAllBytes(file), Charset.defaultCharset());
+                } catch (NoSuchFileException error) {
+                    next = null;
+                }
+
+                if (next != null && !next.equals(watch.source)) {
+                    Zen.hadError = false;
+                    Zen.hadRuntimeError = false;
+
+                    List<Stmt> parsed = watch.update(next);
+                    if (parsed != null) {
+                        Interpreter interpreter = Zen.newInterpreter();
+                        Zen.execute(parsed, interpreter);
+                        Zen.reportLoops(interpreter);
+                    }
+                    System.out.flush();
+                }
+
+                awaitChange(service, file);
+            }
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitChange(WatchService service, Path file) throws InterruptedException {
+        for (;;) {
+            WatchKey key = service.take();
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (file.getFileName().equals(event.context()))
+                    changed = true;
+            }
+            key.reset();
+
+            if (changed) return;
+        }
+    }
+
+    // the statements of the new source, or null if it has a syntax error.
+    List<Stmt> update(String next) {
+        if (statements == null || statements.isEmpty())
+            return parseAll(next);
+
+        int oldLength = source.length();
+        int newLength = next.length();
+        int limit = Math.min(oldLength, newLength);
+
+        int prefix = 0;
+        while (prefix < limit && source.charAt(prefix) == next.charAt(prefix))
+            prefix++;
+        if (prefix == oldLength && prefix == newLength)
+            return statements;
+
+        int suffix = 0;
+        while (suffix < limit - prefix &&
+               source.charAt(oldLength - 1 - suffix) == next.charAt(newLength - 1 - suffix))
+            suffix++;
+
+        int delta = newLength - oldLength;
+        int oldEnd = oldLength - suffix;
+
+        // the last statement starting a line at or before the edit is the first to parse again.
+        int first = 0;
+        for (int i = statements.size() - 1; i > 0; i--) {
+            if (starts[i] <= prefix && atLineStart(source, starts[i])) {
+                first = i;
+                break;
+            }
+        }
+
+        // and the first statement starting a line after it is the first to reuse.
+        int reused = statements.size();
+        for (int i = first; i < statements.size(); i++) {
+            if (starts[i] >= oldEnd && atLineStart(next, starts[i] + delta)) {
+                reused = i;
+                break;
+            }
+        }
+
+        if (reused < statements.size() &&
+            countLines(source, prefix, oldEnd) != countLines(next, prefix, oldEnd + delta)) {
+            reused = statements.size();
+        }
+
+        int regionStart = first == 0 ? 0 : starts[first];
+        int regionEnd = reused == statements.size() ? newLength : starts[reused] + delta;
+        int line = first == 0 ? 1 : lines[first];
+
+        List<Token> tokens = Scanner.scanRegion(next, regionStart, regionEnd, line);
+        if (tokens == null)
+            return parseAll(next);
+
+        List<Token> firstTokens = new ArrayList<>();
+        List<Stmt> region = Parser.parseRegion(tokens, firstTokens, Zen.lazyParse);
+        if (region == null)
+            return parseAll(next);
+
+        int size = first + region.size() + statements.size() - reused;
+        List<Stmt> merged = new ArrayList<>(size);
+        int[] mergedStarts = new int[size];
+        int[] mergedLines = new int[size];
+
+        new Reuse(0).statements(statements.subList(0, first));
+        new Reuse(delta).statements(statements.subList(reused, statements.size()));
+
+        merged.addAll(statements.subList(0, first));
+        System.arraycopy(starts, 0, mergedStarts, 0, first);
+        System.arraycopy(lines, 0, mergedLines, 0, first);
+
+        merged.addAll(region);
+        for (int i = 0; i < region.size(); i++) {
+            mergedStarts[first + i] = firstTokens.get(i).offset;
+            mergedLines[first + i] = firstTokens.get(i).line;
+        }
+
+        merged.addAll(statements.subList(reused, statements.size()));
+        for (int i = reused, j = first + region.size(); i < statements.size(); i++, j++) {
+            mergedStarts[j] = starts[i] + delta;
+            mergedLines[j] = lines[i];
+        }
+
+        source = next;
+        statements = merged;
+        starts = mergedStarts;
+        lines = mergedLines;
+        return statements;
+    }
+
+    private List<Stmt> parseAll(String next) {
+        List<Token> tokens = new Scanner(next).scanTokens();
+        Parser parser = new Parser(tokens);
+        parser.setLazy(Zen.lazyParse);
+        List<Token> firstTokens = new ArrayList<>();
+        List<Stmt> parsed = parser.parse(firstTokens);
+
+        source = next;
+        if (Zen.hadError) {
+            statements = null;
+            return null;
+        }
+
+        statements = parsed;
+        starts = new int[parsed.size()];
+        lines = new int[parsed.size()];
+        for (int i = 0; i < parsed.size(); i++) {
+            starts[i] = firstTokens.get(i).offset;
+            lines[i] = firstTokens.get(i).line;
+        }
+
+        return statements;
+    }
+
+    // walks reused statements, moving each of their tokens once and resetting their caches.
+    private static final class Reuse {
+        private final int delta;
+        private final Set<Token> moved = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Reuse(int delta) {
+            this.delta = delta;
+        }
+
+        void statements(List<Stmt> statements) {
+            // a block that was never parsed has tokens but no nodes yet.
+            if (!Parser.isParsed(statements)) {
+                for (Token token : Parser.unparsedTokens(statements)) {
+                    token(token);
+                }
+                return;
+            }
+
+            for (Stmt statement : statements) {
+                statement(statement);
+            }
+        }
+
+        private void statement(Stmt stmt) {
+            if (stmt instanceof Stmt.Block) {
+                statements(((Stmt.Block)stmt).statements);
+            } else if (stmt instanceof Stmt.Class) {
+                Stmt.Class klass = (Stmt.Class)stmt;
+                token(klass.name);
+                if (klass.superclass != null)
+                    expression(klass.superclass);
+                for (Stmt.Function method : klass.methods) {
+                    statement(method);
+                }
+            } else if (stmt instanceof Stmt.Expression) {
+                expression(((Stmt.Expression)stmt).expression);
+                token(((Stmt.Expression)stmt).semicolon);
+            } else if (stmt instanceof Stmt.Function) {
+                Stmt.Function function = (Stmt.Function)stmt;
+                token(function.name);
+                for (Token param : function.params) {
+                    token(param);
+                }
+                statements(function.body);
+            } else if (stmt instanceof Stmt.Import) {
+                token(((Stmt.Import)stmt).keyword);
+                token(((Stmt.Import)stmt).path);
+            } else if (stmt instanceof Stmt.Print) {
+                token(((Stmt.Print)stmt).keyword);
+                expression(((Stmt.Print)stmt).expression);
+            } else if (stmt instanceof Stmt.Return) {
+                token(((Stmt.Return)stmt).keyword);
+                expression(((Stmt.Return)stmt).value);
+            } else if (stmt instanceof Stmt.Var) {
+                token(((Stmt.Var)stmt).name);
+                expression(((Stmt.Var)stmt).initializer);
+            } else if (stmt instanceof Stmt.While) {
+                Stmt.While loop = (Stmt.While)stmt;
+                token(loop.keyword);
+                expression(loop.condition);
+                statement(loop.body);
+                expression(loop.increment);
+            }
+        }
+
+        private void expression(Expr expr) {
+            if (expr instanceof Expr.Assign) {
+                token(((Expr.Assign)expr).name);
+                expression(((Expr.Assign)expr).value);
+            } else if (expr instanceof Expr.Binary) {
+                Expr.Binary binary = (Expr.Binary)expr;
+                expression(binary.left);
+                token(binary.operator);
+                expression(binary.right);
+            } else if (expr instanceof Expr.Call) {
+                Expr.Call call = (Expr.Call)expr;
+                expression(call.callee);
+                token(call.paren);
+                for (Expr argument : call.arguments) {
+                    expression(argument);
+                }
+            } else if (expr instanceof Expr.Get) {
+                Expr.Get get = (Expr.Get)expr;
+                expression(get.object);
+                token(get.name);
+                get.cache.reset();
+            } else if (expr instanceof Expr.Grouping) {
+                expression(((Expr.Grouping)expr).expression);
+            } else if (expr instanceof Expr.Set) {
+                Expr.Set set = (Expr.Set)expr;
+                expression(set.object);
+                token(set.name);
+                expression(set.value);
+                set.cache.reset();
+            } else if (expr instanceof Expr.Super) {
+                token(((Expr.Super)expr).keyword);
+                token(((Expr.Super)expr).method);
+            } else if (expr instanceof Expr.This) {
+                token(((Expr.This)expr).keyword);
+            } else if (expr instanceof Expr.Unary) {
+                token(((Expr.Unary)expr).operator);
+                expression(((Expr.Unary)expr).right);
+            } else if (expr instanceof Expr.Variable) {
+                token(((Expr.Variable)expr).name);
+            }
+        }
+
+        private void token(Token token) {
+            if (delta != 0 && moved.add(token))
+                token.offset += delta;
+        }
+    }
+
+    // only blanks between the offset and the previous newline.
+    private static boolean atLineStart(String text, int offset) {
+        int i = offset - 1;
+        while (i >= 0 && (text.charAt(i) == ' ' || text.charAt(i) == '\t' || text.charAt(i) == '\r'))
+            i--;
+        return i < 0 || text.charAt(i) == '\n';
+    }
+
+    private static int countLines(String text, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == '\n') count++;
+        }
+
+        return count;
+    }
+}
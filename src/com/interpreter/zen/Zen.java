@@ -3,10 +3,15 @@ package com.interpreter.zen;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 public class Zen {
     // static so that the REPL session utilises the same instance of the interpreter
@@ -14,22 +19,259 @@ public class Zen {
     static boolean hadError = false; // flag to ensure execution of error-free code
     static boolean hadRuntimeError = false;
 
-    public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
-            System.exit(64);
-        } else if (args.length == 1) {
-            runFile(args[0]);
+    // --snapshot <file>: save the globals after the script has run.
+    // --restore <file>: start with the globals saved by an earlier run.
+    private static Path snapshotPath = null;
+    private static Path restorePath = null;
+
+    // the script given on the command line, null for the REPL.
+    private static Path scriptPath = null;
+
+    // --watch: run the script again whenever it is saved, see Watch.
+    private static boolean watch = false;
+
+    // --stream: run each top-level statement as soon as it is parsed, see runStream().
+    private static boolean stream = false;
+
+    // --train <directory>: run the programs in it on every engine and exit, see Training.
+    private static Path trainPath = null;
+
+    // --max-steps, --timeout <ms>, --max-string and --max-depth limit each execution.
+    private static final Budget budget = new Budget();
+
+    // --parallel-scan: lex large sources in chunks on the common fork-join pool.
+    // --parallel-parse: parse top-level statements of large sources concurrently.
+    static boolean parallelScan = false;
+    static boolean parallelParse = false;
+
+    // --lazy-parse: only check block bodies, and parse each when it first runs.
+    static boolean lazyParse = false;
+
+    // --infer-types: keep numeric block variables unboxed in the tree engine.
+    static boolean inferTypes = false;
+
+    // --eliminate-dead-stores: drop unread block variables and overwritten stores.
+    static boolean eliminateDeadStores = false;
+
+    // --profile-loops: count the iterations of every loop, reported after the run.
+    // loops are only counted by the tree engine, which then always runs.
+    static boolean profileLoops = false;
+
+    // --record-profile <file>: save what the run found out about the script, see Profile.
+    // --profile <file>: parse, size and specialise the script as an earlier run found it.
+    // like loops, profiles are only recorded by the tree engine.
+    private static Path recordPath = null;
+    private static Path profilePath = null;
+    static Profile profile = null;
+
+    // --engine <name>: "tree" walks the AST, "closure" compiles it to lambdas,
+    // "nanbox" does the same over NaN-boxed values, "jit" compiles it to bytecode
+    // and "pattern" walks the record form of the AST, dispatching by pattern matching.
+    // compiled engines only run without a budget, and fall back to the tree
+    // for programs they cannot compile.
+    static String engine = "tree";
+
+    // calls in scripts nest on the Java stack of the tree engine, only tail calls
+    // do not, so the interpreter runs on a thread with a much larger stack than main.
+    private static final long STACK_SIZE = 512L << 20;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                start(args);
+            } catch (IOException | RuntimeException | Error error) {
+                failure[0] = error;
+            }
+        }, "zen", STACK_SIZE);
+        thread.start();
+        thread.join();
+
+        if (failure[0] instanceof IOException) throw (IOException)failure[0];
+        if (failure[0] instanceof RuntimeException) throw (RuntimeException)failure[0];
+        if (failure[0] instanceof Error) throw (Error)failure[0];
+    }
+
+    private static void start(String[] args) throws IOException {
+        String script = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--snapshot":
+                    snapshotPath = Paths.get(optionValue(args, ++i));
+                    break;
+                case "--restore":
+                    restorePath = Paths.get(optionValue(args, ++i));
+                    break;
+                case "--watch":
+                    watch = true;
+                    break;
+                case "--stream":
+                    stream = true;
+                    break;
+                case "--train":
+                    trainPath = Paths.get(optionValue(args, ++i));
+                    break;
+                case "--parallel-scan":
+                    parallelScan = true;
+                    break;
+                case "--parallel-parse":
+                    parallelParse = true;
+                    break;
+                case "--lazy-parse":
+                    lazyParse = true;
+                    break;
+                case "--infer-types":
+                    inferTypes = true;
+                    break;
+                case "--eliminate-dead-stores":
+                    eliminateDeadStores = true;
+                    break;
+                case "--profile-loops":
+                    profileLoops = true;
+                    break;
+                case "--record-profile":
+                    recordPath = Paths.get(optionValue(args, ++i));
+                    break;
+                case "--profile":
+                    profilePath = Paths.get(optionValue(args, ++i));
+                    break;
+                case "--engine":
+                    engine = optionValue(args, ++i);
+                    if (!engine.matches("tree|closure|nanbox|jit|pattern"))
+                        usage();
+                    break;
+                case "--max-steps":
+                    budget.maxSteps = limitValue(args, ++i);
+                    break;
+                case "--timeout":
+                    // the deadline is kept in nanoseconds, which must fit in a long.
+                    budget.timeoutMillis = limitValue(args, ++i, TimeUnit.NANOSECONDS.toMillis(Long.MAX_VALUE));
+                    break;
+                case "--max-string":
+                    budget.maxStringLength = (int)Math.min(limitValue(args, ++i), Integer.MAX_VALUE);
+                    break;
+                case "--max-depth":
+                    budget.maxDepth = (int)Math.min(limitValue(args, ++i), Integer.MAX_VALUE);
+                    break;
+                default:
+                    if (script != null || args[i].startsWith("--"))
+                        usage();
+                    script = args[i];
+                    break;
+            }
+        }
+
+        interpreter.setBudget(budget);
+        interpreter.setInferTypes(inferTypes);
+        if (profileLoops)
+            interpreter.setLoopProfile(new LoopProfile());
+        if (script != null) {
+            scriptPath = Paths.get(script);
+            interpreter.setScript(scriptPath);
+        }
+        if (restorePath != null)
+            Snapshot.read(restorePath, interpreter.globals);
+
+        if (trainPath != null) {
+            if (script != null || watch || stream)
+                usage();
+            Training.run(trainPath);
+        } else if (script != null && watch) {
+            Watch.run(Paths.get(script));
+        } else if (script != null && stream) {
+            runStream(script);
+        } else if (script != null) {
+            runFile(script);
+        } else if (watch || stream) {
+            usage();
         } else {
             runPrompt();
         }
     }
 
+    // the globals of --restore, read once and forked for every new interpreter.
+    private static ForkableEnvironment restored = null;
+
+    // an interpreter set up from the command line, for every run of Watch.
+    static Interpreter newInterpreter() throws IOException {
+        Interpreter fresh;
+        if (restorePath == null) {
+            fresh = new Interpreter();
+        } else {
+            if (restored == null) {
+                restored = new ForkableEnvironment();
+                Snapshot.read(restorePath, restored);
+            }
+            fresh = new Interpreter(restored.fork());
+        }
+
+        fresh.setBudget(budget);
+        fresh.setInferTypes(inferTypes);
+        if (profileLoops)
+            fresh.setLoopProfile(new LoopProfile());
+        fresh.setScript(scriptPath);
+        return fresh;
+    }
+
+    private static String optionValue(String[] args, int index) {
+        if (index >= args.length)
+            usage();
+        return args[index];
+    }
+
+    private static long limitValue(String[] args, int index) {
+        return limitValue(args, index, Long.MAX_VALUE);
+    }
+
+    private static long limitValue(String[] args, int index, long max) {
+        try {
+            long value = Long.parseLong(optionValue(args, index));
+            if (value >= 0 && value <= max)
+                return value;
+        } catch (NumberFormatException error) {
+            // reported through usage() below.
+        }
+
+        usage();
+        return 0;
+    }
+
+    private static void usage() {
+        System.out.println("Usage: zen [--snapshot file] [--restore file] [--watch] [--stream] [--train directory]" +
+            " [--max-steps n] [--timeout ms] [--max-string n] [--max-depth n]" +
+            " [--parallel-scan] [--parallel-parse] [--lazy-parse] [--engine tree|closure|nanbox|jit|pattern]" +
+            " [--infer-types] [--eliminate-dead-stores] [--profile-loops]" +
+            " [--record-profile file] [--profile file] [script]");
+        System.exit(64);
+    }
+
     // read bytes from the file at path, store those bytes in an array of type byte
     // then, "run"/execute the read bytes by converting it into a String object.
     private static void runFile(String path) throws IOException {
         byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+        String source = new String(bytes, Charset.defaultCharset());
+
+        // a missing or unreadable profile, or one of an older version of the script, is ignored.
+        if (profilePath != null)
+            profile = Profile.read(profilePath, source);
+        if (profile != null) {
+            interpreter.setProfile(profile);
+            if (profile.hotNumbers())
+                interpreter.setInferTypes(true);
+        }
+        if (recordPath != null)
+            interpreter.setRecording(new Profile());
+
+        List<Stmt> statements = run(source, interpreter);
+        reportLoops(interpreter);
+
+        if (recordPath != null && statements != null)
+            interpreter.recording().write(recordPath, source, statements, interpreter.globals);
+
+        // only an error-free run is worth starting from later on.
+        if (snapshotPath != null && !hadError && !hadRuntimeError)
+            Snapshot.write(interpreter.globals, snapshotPath);
 
         // indicates an error in the exit-code.
         if (hadError)
@@ -38,6 +280,47 @@ public class Zen {
             System.exit(70);
     }
 
+    /*
+     * reads, scans, parses and runs the script one top-level statement at a time,
+     * each statement's tokens and AST are dropped once it has run.
+     *
+     * the whole script can no longer be checked before anything runs:
+     * the statements before the first syntax error have already run when it is found.
+     * the error stops execution there, the rest of the script is still parsed
+     * to report every syntax error, and the exit code is 65 as usual.
+     * scan errors are reported with the statement they occur in.
+     * a runtime error stops the script, exactly like in a normal run.
+     */
+    private static void runStream(String path) throws IOException {
+        try (Reader reader = new InputStreamReader(
+                 Files.newInputStream(Paths.get(path)), Charset.defaultCharset())) {
+            TokenStream tokens = new TokenStream(reader);
+            Parser parser = new Parser(tokens);
+            interpreter.startStreaming();
+
+            while (parser.hasMore() && !hadRuntimeError) {
+                Stmt statement = parser.parseNext();
+                tokens.reportErrors(tokens.get(parser.position() - 1).line);
+                if (!hadError)
+                    execute(Collections.singletonList(statement), interpreter);
+
+                // the parser may still look at the previous token.
+                tokens.release(parser.position() - 1);
+            }
+
+            tokens.reportErrors(Integer.MAX_VALUE);
+        }
+        reportLoops(interpreter);
+
+        if (snapshotPath != null && !hadError && !hadRuntimeError)
+            Snapshot.write(interpreter.globals, snapshotPath);
+
+        if (hadError)
+            System.exit(65);
+        if (hadRuntimeError)
+            System.exit(70);
+    }
+
     // interactive mode, if interpreter is executed without any args
     private static void runPrompt() throws IOException {
         InputStreamReader input = new InputStreamReader(System.in);
@@ -56,8 +339,15 @@ public class Zen {
     }
 
     private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
+        run(source, interpreter);
+    }
+
+    // also used by CorpusRunner, which runs every program in a fresh interpreter.
+    // the statements of the program, null if it has a syntax error.
+    static List<Stmt> run(String source, Interpreter interpreter) {
+        List<Token> tokens = parallelScan
+            ? Scanner.scanTokensParallel(source, ForkJoinPool.commonPool())
+            : new Scanner(source).scanTokens();
 
         /*
          * prints scanned tokens after lexxing.
@@ -66,13 +356,61 @@ public class Zen {
          * }
          */
 
-        Parser parser = new Parser(tokens);
-        List<Stmt> statements = parser.parse();
+        List<Stmt> statements;
+        if (parallelParse) {
+            statements = Parser.parseParallel(tokens, ForkJoinPool.commonPool(), lazyParse, profile);
+        } else {
+            Parser parser = new Parser(tokens);
+            parser.setLazy(lazyParse);
+            parser.setProfile(profile);
+            statements = parser.parse();
+        }
 
         if (hadError)
+            return null;
+
+        execute(statements, interpreter);
+        return statements;
+    }
+
+    // prints the loop counts of --profile-loops to stderr.
+    static void reportLoops(Interpreter interpreter) {
+        if (interpreter.loopProfile() != null)
+            interpreter.loopProfile().report(System.err);
+    }
+
+    // runs parsed statements on the engine picked on the command line.
+    static void execute(List<Stmt> statements, Interpreter interpreter) {
+        if (!Modules.preload(statements, interpreter.directory()))
             return;
 
+        // removing statements would change the steps counted against a budget.
+        if (eliminateDeadStores && budget.isUnlimited())
+            statements = DeadStoreElimination.apply(statements);
+
         // System.out.println(new ASTPrinter().print(expression));
+        // only the tree engine checks a budget, counts loops and records profiles.
+        boolean compiled = budget.isUnlimited() && !profileLoops && interpreter.recording() == null;
+        Runnable program = null;
+        if (engine.equals("jit") && compiled) {
+            program = Jit.compile(statements, interpreter.globals);
+        } else if (engine.equals("closure") && compiled) {
+            program = ClosureCompiler.compile(statements, interpreter.globals);
+        } else if (engine.equals("nanbox") && compiled) {
+            program = NanBoxCompiler.compile(statements, interpreter.globals);
+        } else if (engine.equals("pattern") && compiled) {
+            program = PatternInterpreter.compile(statements, interpreter.globals);
+        }
+
+        if (program != null) {
+            try {
+                program.run();
+            } catch (RuntimeError error) {
+                runtimeError(error);
+            }
+            return;
+        }
+
         interpreter.interpret(statements);
     }
 
@@ -84,10 +422,24 @@ public class Zen {
     }
 
     private static void report(int line, String where, String message) {
-        System.err.println("[line " + line + "] Error" + where + ": " + message);
+        String location = module == null ? "" : " in " + module;
+        System.err.println("[line " + line + location + "] Error" + where + ": " + message);
         hadError = true;
     }
 
+    // the module whose errors are being reported, null for the script itself.
+    private static Path module = null;
+
+    static void inModule(Path path, Runnable reporting) {
+        Path enclosing = module;
+        module = path;
+        try {
+            reporting.run();
+        } finally {
+            module = enclosing;
+        }
+    }
+
     /*
      * in case a syntax error is encountered,
      * detect the error, and report it to the user.
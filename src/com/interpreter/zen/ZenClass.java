@@ -0,0 +1,51 @@
+package com.interpreter.zen;
+
+import java.util.Map;
+
+/*
+ * a class value: its methods, unbound, and the root shape of its instances.
+ * calling it makes an instance and runs the initializer, init(), if it has one.
+ */
+class ZenClass {
+    final String name;
+    final ZenClass superclass;
+    private final Map<String, ZenFunction> methods;
+    final ZenFunction initializer;
+    final Shape root;
+
+    // the most fields an instance has had so far, new instances start with room for them.
+    private int fields = 0;
+
+    ZenClass(String name, ZenClass superclass, Map<String, ZenFunction> methods) {
+        this.name = name;
+        this.superclass = superclass;
+        this.methods = methods;
+        this.root = new Shape(this);
+        this.initializer = findMethod("init");
+    }
+
+    ZenFunction findMethod(String name) {
+        ZenFunction method = methods.get(name);
+        if (method == null && superclass != null)
+            return superclass.findMethod(name);
+
+        return method;
+    }
+
+    ZenInstance instantiate() {
+        return new ZenInstance(root, new Object[fields]);
+    }
+
+    void grew(int size) {
+        if (size > fields) fields = size;
+    }
+
+    int capacity() {
+        return fields;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
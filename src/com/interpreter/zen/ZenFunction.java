@@ -0,0 +1,67 @@
+package com.interpreter.zen;
+
+/*
+ * a function value: its declaration, the layout Resolver made for its
+ * frames, and what it closes over. a method taken from an instance
+ * is bound to it, calls of a method on an instance do not bind it.
+ */
+class ZenFunction {
+    // a variable captured by a closure, see Resolver.
+    static final class Cell {
+        Object value;
+
+        Cell(Object value) {
+            this.value = value;
+        }
+    }
+
+    static final Cell[] NO_CELLS = new Cell[0];
+
+    final Stmt.Function declaration;
+
+    // null until the first call of a function declared outside of functions.
+    // every resolver lays a function out the same way, and the layout holds
+    // the bindings of the body too, so whichever interpreter calls it first
+    // can set it, and one sharing the globals of another can call it.
+    Resolver.Layout layout;
+
+    // the environment the function was declared in, for the names it does not resolve.
+    final Environment closure;
+
+    // the variables it captured from the functions it is nested in.
+    final Cell[] cells;
+
+    // init() of a class, which returns its instance.
+    final boolean initializer;
+
+    // the instance a method is bound to, null if it is not.
+    final Object receiver;
+
+    ZenFunction(Stmt.Function declaration, Resolver.Layout layout,
+                Environment closure, Cell[] cells) {
+        this(declaration, layout, closure, cells, false, null);
+    }
+
+    ZenFunction(Stmt.Function declaration, Resolver.Layout layout, Environment closure,
+                Cell[] cells, boolean initializer, Object receiver) {
+        this.declaration = declaration;
+        this.layout = layout;
+        this.closure = closure;
+        this.cells = cells;
+        this.initializer = initializer;
+        this.receiver = receiver;
+    }
+
+    ZenFunction bind(ZenInstance instance) {
+        return new ZenFunction(declaration, layout, closure, cells, initializer, instance);
+    }
+
+    int arity() {
+        return declaration.params.size();
+    }
+
+    @Override
+    public String toString() {
+        return "<fn " + declaration.name.lexeme + ">";
+    }
+}
@@ -0,0 +1,35 @@
+package com.interpreter.zen;
+
+import java.util.Arrays;
+
+/*
+ * an instance of a class: its shape and the values of its fields,
+ * in the slots the shape gives them, see Shape.
+ */
+final class ZenInstance {
+    Shape shape;
+    Object[] fields;
+
+    ZenInstance(Shape shape, Object[] fields) {
+        this.shape = shape;
+        this.fields = fields;
+    }
+
+    // stores a field through an entry for a set of the current shape.
+    void store(InlineCache.Entry entry, Object value) {
+        if (entry.transition != null) {
+            shape = entry.transition;
+            if (entry.slot >= fields.length) {
+                fields = Arrays.copyOf(fields, Math.max(entry.slot + 1, 2 * fields.length));
+                shape.owner.grew(shape.size);
+            }
+        }
+
+        fields[entry.slot] = value;
+    }
+
+    @Override
+    public String toString() {
+        return shape.owner.name + " instance";
+    }
+}